@@ -28,6 +28,7 @@ import com.cowave.zoo.tools.ServletUtils;
 import lombok.Data;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.http.HttpStatus;
+import org.springframework.web.context.request.RequestAttributes;
 import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 
@@ -113,64 +114,97 @@ public class Access {
         ACCESS.remove();
     }
 
+    private int pageIndexOr(int defaultIndex) {
+        return pageIndex == null ? defaultIndex : pageIndex;
+    }
+
+    private int pageSizeOr(int defaultSize) {
+        return pageSize == null ? defaultSize : pageSize;
+    }
+
+    /**
+     * 本机ip只获取一次（NetUtil会遍历网卡）
+     */
+    private static class LocalHost {
+        private static final String IP = NetUtil.getLocalhostStr();
+    }
+
     /**
      * 当前操作权限key
      */
     public static String permit() {
-        return Optional.ofNullable(get()).map(access -> access.permit).orElse(null);
+        Access access = get();
+        return access == null ? null : access.permit;
     }
 
     /**
      * 当前操作权限对应的数据权限
      */
     public static List<Integer> scopeIds() {
-        return Optional.ofNullable(get()).map(access -> access.scopeIds).orElse(null);
+        Access access = get();
+        return access == null ? null : access.scopeIds;
     }
 
     /**
      * 请求id
      */
     public static String accessId() {
-        return Optional.ofNullable(get()).map(access -> access.accessId).orElse(null);
+        Access access = get();
+        return access == null ? null : access.accessId;
     }
 
     /**
-     * 访问ip
+     * 访问ip，没有访问信息时返回本机ip
      */
     public static String accessIp() {
-        return Optional.ofNullable(get()).map(access -> access.accessIp).orElse(NetUtil.getLocalhostStr());
+        Access access = get();
+        return access == null || access.accessIp == null ? LocalHost.IP : access.accessIp;
+    }
+
+    /**
+     * 本机ip（首次调用时获取）
+     */
+    public static String localIp() {
+        return LocalHost.IP;
     }
 
     /**
      * 访问Url
      */
     public static String accessUrl() {
-        return Optional.ofNullable(get()).map(access -> access.accessUrl).orElse(null);
+        Access access = get();
+        return access == null ? null : access.accessUrl;
     }
 
     /**
      * 访问方法（HttpMethod）
      */
     public static String accessMethod() {
-        return Optional.ofNullable(get()).map(access -> access.accessMethod).orElse(null);
+        Access access = get();
+        return access == null ? null : access.accessMethod;
     }
 
     /**
      * 访问时间
      */
     public static Date accessTime() {
-        return Optional.ofNullable(get()).map(access -> new Date(access.accessTime)).orElse(new Date());
+        return new Date(accessTimeMillis());
+    }
+
+    /**
+     * 访问时间戳，没有访问信息时返回当前时间
+     */
+    public static long accessTimeMillis() {
+        Access access = get();
+        return access == null || access.accessTime == null ? System.currentTimeMillis() : access.accessTime;
     }
 
     /**
      * 分页设置（mybatis-plus），默认: limit 10 offset 0
      */
     public static <T> Page<T> page(){
-        return Optional.ofNullable(get()).map(
-                access -> new Page<T>(
-                        Optional.ofNullable(access.pageIndex).orElse(1),
-                        Optional.ofNullable(access.pageSize).orElse(10)
-                )).orElse(new Page<>());
+        Access access = get();
+        return access == null ? new Page<>() : new Page<>(access.pageIndexOr(1), access.pageSizeOr(10));
     }
 
     /**
@@ -178,25 +212,23 @@ public class Access {
      * @param defaultSize 默认分页大小
      */
     public static <T> Page<T> page(int defaultSize){
-        return Optional.ofNullable(get()).map(
-                access -> new Page<T>(
-                    Optional.ofNullable(access.pageIndex).orElse(1),
-                    Optional.ofNullable(access.pageSize).orElse(defaultSize)
-            )).orElse(new Page<>(1, defaultSize));
+        Access access = get();
+        return access == null ? new Page<>(1, defaultSize) : new Page<>(access.pageIndexOr(1), access.pageSizeOr(defaultSize));
     }
 
     /**
      * 分页页码，默认1
      */
     public static int pageIndex() {
-        return Optional.ofNullable(get()).map(access -> Optional.ofNullable(access.pageIndex).orElse(1)).orElse(1);
+        Access access = get();
+        return access == null ? 1 : access.pageIndexOr(1);
     }
 
     /**
      * 分页大小，默认10
      */
     public static int pageSize() {
-        return Optional.ofNullable(get()).map(access -> Optional.ofNullable(access.pageSize).orElse(10)).orElse(10);
+        return pageSize(10);
     }
 
     /**
@@ -204,18 +236,15 @@ public class Access {
      * @param defaultSize 默认分页大小
      */
     public static int pageSize(int defaultSize) {
-        return Optional.ofNullable(get()).map(access -> Optional.ofNullable(access.pageSize).orElse(defaultSize)).orElse(defaultSize);
+        Access access = get();
+        return access == null ? defaultSize : access.pageSizeOr(defaultSize);
     }
 
     /**
      * 分页偏移量
      */
     public static int pageOffset() {
-        return Optional.ofNullable(get()).map(access -> {
-                int pageIndex = Optional.ofNullable(access.pageIndex).orElse(1);
-                int pageSize = Optional.ofNullable(access.pageSize).orElse(10);
-                return (pageIndex <= 0 || pageSize <= 0) ? 0 : (pageIndex - 1) * pageSize;
-            }).orElse(0);
+        return pageOffset(10);
     }
 
     /**
@@ -223,18 +252,21 @@ public class Access {
      * @param defaultSize 默认分页大小
      */
     public static int pageOffset(int defaultSize) {
-        return Optional.ofNullable(get()).map(access -> {
-                int pageIndex = Optional.ofNullable(access.pageIndex).orElse(1);
-                int pageSize = Optional.ofNullable(access.pageSize).orElse(defaultSize);
-                return (pageIndex <= 0 || pageSize <= 0) ? 0 : (pageIndex - 1) * pageSize;
-            }).orElse(0);
+        Access access = get();
+        if (access == null) {
+            return 0;
+        }
+        int pageIndex = access.pageIndexOr(1);
+        int pageSize = access.pageSizeOr(defaultSize);
+        return (pageIndex <= 0 || pageSize <= 0) ? 0 : (pageIndex - 1) * pageSize;
     }
 
     /**
      * 鉴权信息
      */
     public static AccessUserDetails userDetails() {
-        return Optional.ofNullable(get()).map(access -> access.userDetails).orElse(null);
+        Access access = get();
+        return access == null ? null : access.userDetails;
     }
 
     /**
@@ -248,174 +280,201 @@ public class Access {
      * 租户id（鉴权信息）
      */
     public static String tenantId() {
-        return Optional.ofNullable(userDetails()).map(AccessUserDetails::getTenantId).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : userDetails.getTenantId();
     }
 
     /**
      * 用户id（鉴权信息）
      */
     public static <T> T userId() {
-        return (T) Optional.ofNullable(userDetails()).map(AccessUserDetails::getUserId).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : (T) userDetails.getUserId();
     }
 
     /**
      * 用户id（鉴权信息）
      */
     public static <T> T userId(Function<Object, T> converter) {
-        return Optional.ofNullable(userDetails()).map(
-                userDetails -> converter.apply(userDetails.getUserId())).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : converter.apply(userDetails.getUserId());
     }
 
     /**
      * 用户编码（鉴权信息）
      */
     public static <T> T userCode() {
-        return (T) Optional.ofNullable(userDetails()).map(AccessUserDetails::getUserCode).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : (T) userDetails.getUserCode();
     }
 
     /**
      * 用户编码（鉴权信息）
      */
     public static <T> T userCode(Function<Object, T> converter) {
-        return Optional.ofNullable(userDetails()).map(
-                userDetails -> converter.apply(userDetails.getUserCode())).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : converter.apply(userDetails.getUserCode());
     }
 
     /**
      * 用户类型（鉴权信息）
      */
     public static String userType() {
-        return Optional.ofNullable(userDetails()).map(AccessUserDetails::getUserType).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : userDetails.getUserType();
     }
 
     /**
      * 用户名称（鉴权信息）
      */
     public static String userName() {
-        return Optional.ofNullable(userDetails()).map(AccessUserDetails::getUserNick).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : userDetails.getUserNick();
     }
 
     /**
      * 用户账号（鉴权信息）
      */
     public static String userAccount() {
-        return Optional.ofNullable(userDetails()).map(AccessUserDetails::getUsername).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : userDetails.getUsername();
     }
 
     /**
      * 用户角色（鉴权信息）
      */
     public static List<String> userRoles() {
-        return Optional.ofNullable(userDetails()).map(AccessUserDetails::getRoles).orElse(new ArrayList<>());
+        AccessUserDetails userDetails = userDetails();
+        if (userDetails == null || userDetails.getRoles() == null) {
+            return new ArrayList<>();
+        }
+        return userDetails.getRoles();
     }
 
     /**
      * 操作权限（鉴权信息）
      */
     public static List<String> userPermits() {
-        return Optional.ofNullable(userDetails()).map(AccessUserDetails::getPermissions).orElse(new ArrayList<>());
+        AccessUserDetails userDetails = userDetails();
+        if (userDetails == null || userDetails.getPermissions() == null) {
+            return new ArrayList<>();
+        }
+        return userDetails.getPermissions();
     }
 
     /**
      * 数据权限（鉴权信息，permit -> scopeId列表）
      */
     public static Map<String, List<Integer>> userPermitScopes() {
-        return Optional.ofNullable(userDetails()).map(AccessUserDetails::getPermitScopes).orElse(new HashMap<>());
+        AccessUserDetails userDetails = userDetails();
+        if (userDetails == null || userDetails.getPermitScopes() == null) {
+            return new HashMap<>();
+        }
+        return userDetails.getPermitScopes();
     }
 
     /**
      * 是否系统管理员（鉴权信息）
      */
     public static boolean isAdminUser(){
-        return Optional.of(userRoles()).filter(roles -> !roles.isEmpty()).map(roles -> roles.contains("sysAdmin")).orElse(false);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails != null && userDetails.isAdmin();
     }
 
     /**
      * 部门id（鉴权信息）
      */
     public static <T> T deptId() {
-        return (T) Optional.ofNullable(userDetails()).map(AccessUserDetails::getDeptId).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : (T) userDetails.getDeptId();
     }
 
     /**
      * 部门id（鉴权信息）
      */
     public static <T> T deptId(Function<Object, T> converter) {
-        return Optional.ofNullable(userDetails()).map(
-                userDetails -> converter.apply(userDetails.getDeptId())).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : converter.apply(userDetails.getDeptId());
     }
 
     /**
      * 部门编码（鉴权信息）
      */
     public static <T> T deptCode() {
-        return (T) Optional.ofNullable(userDetails()).map(AccessUserDetails::getDeptCode).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : (T) userDetails.getDeptCode();
     }
 
     /**
      * 部门编码（鉴权信息）
      */
     public static <T> T deptCode(Function<Object, T> converter) {
-        return Optional.ofNullable(userDetails()).map(
-                userDetails -> converter.apply(userDetails.getDeptCode())).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : converter.apply(userDetails.getDeptCode());
     }
 
     /**
      * 部门名称（鉴权信息）
      */
     public static String deptName() {
-        return Optional.ofNullable(userDetails()).map(AccessUserDetails::getDeptName).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : userDetails.getDeptName();
     }
 
     /**
      * 集群id（鉴权信息）
      */
     public static Integer clusterId() {
-        return Optional.ofNullable(userDetails()).map(AccessUserDetails::getClusterId).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : userDetails.getClusterId();
     }
 
     /**
      * 集群级别（鉴权信息）
      */
     public static Integer clusterLevel() {
-        return Optional.ofNullable(userDetails()).map(AccessUserDetails::getClusterLevel).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : userDetails.getClusterLevel();
     }
 
     /**
      * 集群名称（鉴权信息）
      */
     public static String clusterName() {
-        return Optional.ofNullable(userDetails()).map(AccessUserDetails::getClusterName).orElse(null);
+        AccessUserDetails userDetails = userDetails();
+        return userDetails == null ? null : userDetails.getClusterName();
     }
 
     /**
      * Servlet请求
      */
     public static HttpServletRequest httpRequest() {
-        return Optional.ofNullable((ServletRequestAttributes) RequestContextHolder.getRequestAttributes())
-                .map(ServletRequestAttributes::getRequest).orElse(null);
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes servletAttributes ? servletAttributes.getRequest() : null;
     }
 
     /**
      * Servlet响应
      */
     public static HttpServletResponse httpResponse() {
-        return Optional.ofNullable((ServletRequestAttributes) RequestContextHolder.getRequestAttributes())
-                .map(ServletRequestAttributes::getResponse).orElse(null);
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes instanceof ServletRequestAttributes servletAttributes ? servletAttributes.getResponse() : null;
     }
 
     /**
      * 获取请求参数
      */
     public static Map<String, Object> getAccessLogParams() {
-        return Optional.ofNullable(get()).map(access -> access.accessLogParams).orElse(null);
+        Access access = get();
+        return access == null ? null : access.accessLogParams;
     }
 
     /**
      * 获取请求Header（HttpServletRequest）
      */
     public static String getRequestHeader(String headerName) {
-        return Optional.ofNullable(httpRequest()).map(httpRequest -> httpRequest.getHeader(headerName)).orElse(null);
+        HttpServletRequest httpRequest = httpRequest();
+        return httpRequest == null ? null : httpRequest.getHeader(headerName);
     }
 
     /**
@@ -19,8 +19,9 @@ import com.cowave.zoo.framework.access.annotation.SensitiveSerializerModifier;
 import com.cowave.zoo.http.client.response.HttpResponse;
 import com.cowave.zoo.http.client.response.Response;
 import com.cowave.zoo.framework.access.filter.AccessIdGenerator;
+import com.cowave.zoo.framework.access.log.AsyncAccessLogSink;
+import com.cowave.zoo.framework.access.log.SensitiveJson;
 import com.cowave.zoo.framework.access.security.AccessInfoSetter;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.module.SimpleModule;
@@ -32,9 +33,11 @@ import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Nullable;
 import java.util.Objects;
 
 import static com.cowave.zoo.http.client.constants.HttpCode.SUCCESS;
@@ -48,15 +51,18 @@ public class AccessLogger {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AccessLogger.class);
 
+    private static volatile AsyncAccessLogSink asyncSink;
+
     private final AccessIdGenerator accessIdGenerator;
 
     private final ObjectMapper objectMapper;
 
     private final ObjectWriter sensitiveWriter;
 
-    public AccessLogger(AccessIdGenerator accessIdGenerator, ObjectMapper objectMapper) {
+    public AccessLogger(AccessIdGenerator accessIdGenerator, ObjectMapper objectMapper, @Nullable AsyncAccessLogSink asyncAccessLogSink) {
         this.accessIdGenerator = accessIdGenerator;
         this.objectMapper = objectMapper;
+        AccessLogger.asyncSink = asyncAccessLogSink;
 
         ObjectMapper sensitiveMapper = objectMapper.copy();
         SimpleModule module = new SimpleModule();
@@ -120,7 +126,7 @@ public class AccessLogger {
     }
 
     @AfterReturning(pointcut = "request()", returning = "resp")
-    public void logResponse(Object resp) throws JsonProcessingException {
+    public void logResponse(Object resp) {
         HttpServletResponse servletResponse = Access.httpResponse();
 
         // 非Servlet忽略
@@ -165,44 +171,44 @@ public class AccessLogger {
             if (response != null) {
                 // Response
                 if (Objects.equals(code, SUCCESS.getCode())) {
-                    LOGGER.info("<< {} {}ms {code={}, msg={}}", status, cost, code, msg);
+                    info("<< {} {}ms {code={}, msg={}}", status, cost, code, msg);
                 } else {
                     if (!LOGGER.isInfoEnabled()) {
-                        LOGGER.warn("<< {} {}ms {code={}, msg={}} {} {}", status, cost, code, msg, access.getAccessUrl(), sensitiveWriter.writeValueAsString(access.getAccessLogParams()));
+                        warn("<< {} {}ms {code={}, msg={}} {} {}", status, cost, code, msg, access.getAccessUrl(), SensitiveJson.of(sensitiveWriter, access.getAccessLogParams()));
                     } else {
-                        LOGGER.warn("<< {} {}ms {code={}, msg={}}", status, cost, code, msg);
+                        warn("<< {} {}ms {code={}, msg={}}", status, cost, code, msg);
                     }
                 }
             } else if (httpResponse != null) {
                 // HttpResponse
                 if (status == HttpStatus.OK.value()) {
-                    LOGGER.info("<< {} {}ms {}", status, cost, msg);
+                    info("<< {} {}ms {}", status, cost, msg);
                 } else {
                     if (!LOGGER.isInfoEnabled()) {
-                        LOGGER.warn("<< {} {}ms {} {} {}", status, cost, msg, access.getAccessUrl(), sensitiveWriter.writeValueAsString(access.getAccessLogParams()));
+                        warn("<< {} {}ms {} {} {}", status, cost, msg, access.getAccessUrl(), SensitiveJson.of(sensitiveWriter, access.getAccessLogParams()));
                     } else {
-                        LOGGER.warn("<< {} {}ms {}", status, cost, msg);
+                        warn("<< {} {}ms {}", status, cost, msg);
                     }
                 }
             } else {
                 // Others
                 if (status == HttpStatus.OK.value()) {
-                    LOGGER.info("<< {} {}ms", status, cost);
+                    info("<< {} {}ms", status, cost);
                 } else {
                     if (!LOGGER.isInfoEnabled()) {
-                        LOGGER.warn("<< {} {}ms {} {}", status, cost, access.getAccessUrl(), sensitiveWriter.writeValueAsString(access.getAccessLogParams()));
+                        warn("<< {} {}ms {} {}", status, cost, access.getAccessUrl(), SensitiveJson.of(sensitiveWriter, access.getAccessLogParams()));
                     } else {
-                        LOGGER.info("<< {} {}ms", status, cost);
+                        info("<< {} {}ms", status, cost);
                     }
                 }
             }
         } else {
             if (response != null) {
-                LOGGER.debug("<< {} {}ms {code={}, msg={}, data={}}", status, cost, code, msg, sensitiveWriter.writeValueAsString(data));
+                debug("<< {} {}ms {code={}, msg={}, data={}}", status, cost, code, msg, SensitiveJson.of(sensitiveWriter, data));
             } else if (httpResponse != null) {
-                LOGGER.debug("<< {} {}ms {}", status, cost, sensitiveWriter.writeValueAsString(data));
+                debug("<< {} {}ms {}", status, cost, SensitiveJson.of(sensitiveWriter, data));
             } else {
-                LOGGER.debug("<< {} {}ms {}", status, cost, sensitiveWriter.writeValueAsString(resp));
+                debug("<< {} {}ms {}", status, cost, SensitiveJson.of(sensitiveWriter, resp));
             }
         }
     }
@@ -211,14 +217,49 @@ public class AccessLogger {
         return LOGGER.isInfoEnabled();
     }
 
+    public static boolean isDebugEnabled() {
+        return LOGGER.isDebugEnabled();
+    }
+
+    public static void debug(String format, Object... arguments) {
+        if (!LOGGER.isDebugEnabled()) {
+            return;
+        }
+        AsyncAccessLogSink sink = asyncSink;
+        if (sink != null) {
+            sink.submit(Level.DEBUG, format, arguments);
+        } else {
+            LOGGER.debug(format, arguments);
+        }
+    }
+
     public static void info(String format, Object... arguments) {
-        LOGGER.info(format, arguments);
+        if (!LOGGER.isInfoEnabled()) {
+            return;
+        }
+        AsyncAccessLogSink sink = asyncSink;
+        if (sink != null) {
+            sink.submit(Level.INFO, format, arguments);
+        } else {
+            LOGGER.info(format, arguments);
+        }
     }
 
     public static void warn(String format, Object... arguments) {
-        LOGGER.warn(format, arguments);
+        if (!LOGGER.isWarnEnabled()) {
+            return;
+        }
+        AsyncAccessLogSink sink = asyncSink;
+        if (sink != null) {
+            sink.submit(Level.WARN, format, arguments);
+        } else {
+            LOGGER.warn(format, arguments);
+        }
     }
 
+    /**
+     * 异常日志始终同步输出
+     */
     public static void error(String format, Object... arguments) {
         LOGGER.error(format, arguments);
     }
@@ -12,6 +12,7 @@
  */
 package com.cowave.zoo.framework.access;
 
+import com.cowave.zoo.framework.access.log.AsyncAccessLogSink;
 import com.cowave.zoo.framework.access.security.AccessUser;
 import com.cowave.zoo.framework.access.security.AuthMode;
 import lombok.Data;
@@ -20,6 +21,7 @@ import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static com.cowave.zoo.framework.access.security.AuthMode.BASIC;
@@ -43,6 +45,11 @@ public class AccessProperties {
      */
     private String[] filter = {"/*"};
 
+    /**
+     * 访问id每秒序号上限，序号宽度为 idIndexLimit - 1 的位数
+     */
+    private int idIndexLimit = 1000;
+
     /**
      * CSP白名单
      * <p/> script-src 'self'
@@ -55,6 +62,21 @@ public class AccessProperties {
      */
     private CrossControl cross = new CrossControl();
 
+    /**
+     * 按路径覆盖响应头设置，按顺序匹配第一个
+     */
+    private List<PathHeaders> pathHeaders;
+
+    /**
+     * 访问日志设置
+     */
+    private AccessLog log = new AccessLog();
+
+    /**
+     * 限流设置
+     */
+    private LimitConfig limit = new LimitConfig();
+
     /**
      * Access鉴权配置
      */
@@ -121,6 +143,14 @@ public class AccessProperties {
         return Optional.ofNullable(auth).map(auth -> auth.accessPrivateKey).orElse(null);
     }
 
+    public String accessKeyId() {
+        return Optional.ofNullable(auth).map(auth -> auth.accessKeyId).orElse(null);
+    }
+
+    public Map<String, String> accessVerificationKeys() {
+        return Optional.ofNullable(auth).map(auth -> auth.accessVerificationKeys).orElse(null);
+    }
+
     public int refreshExpire() {
         return Optional.ofNullable(auth).map(auth -> auth.refreshExpire).orElse(86400 * 7);
     }
@@ -137,6 +167,30 @@ public class AccessProperties {
         return Optional.ofNullable(auth).map(auth -> auth.refreshPrivateKey).orElse(null);
     }
 
+    public String refreshKeyId() {
+        return Optional.ofNullable(auth).map(auth -> auth.refreshKeyId).orElse(null);
+    }
+
+    public Map<String, String> refreshVerificationKeys() {
+        return Optional.ofNullable(auth).map(auth -> auth.refreshVerificationKeys).orElse(null);
+    }
+
+    public int tokenCacheSeconds() {
+        return Optional.ofNullable(auth).map(auth -> auth.tokenCacheSeconds).orElse(0);
+    }
+
+    public int tokenCacheSize() {
+        return Optional.ofNullable(auth).map(auth -> auth.tokenCacheSize).orElse(10000);
+    }
+
+    public String claimsFormat() {
+        return Optional.ofNullable(auth).map(auth -> auth.claimsFormat).orElse("json");
+    }
+
+    public String tokenInfoFormat() {
+        return Optional.ofNullable(auth).map(auth -> auth.tokenInfoFormat).orElse("json");
+    }
+
     public String oauthAppId() {
         return Optional.ofNullable(oauth).map(oauth -> oauth.appId).orElse(null);
     }
@@ -179,6 +233,108 @@ public class AccessProperties {
          * 跨域调用允许包含用户凭据
          */
         private boolean allowCredentials = true;
+
+        /**
+         * 请求没有Origin头时（非浏览器跨域请求）不设置跨域响应头
+         */
+        private boolean skipWithoutOrigin;
+    }
+
+    @Data
+    public static class PathHeaders {
+
+        /**
+         * 匹配路径（Ant风格）
+         */
+        private String[] paths;
+
+        /**
+         * CSP白名单，为空时使用全局设置
+         */
+        private String contentSecurityPolicy;
+
+        /**
+         * 跨域设置，为空时使用全局设置
+         */
+        private CrossControl cross;
+
+        /**
+         * 其它响应头
+         */
+        private Map<String, String> headers;
+    }
+
+    @Data
+    public static class AccessLog {
+
+        /**
+         * 请求body最大缓存字节数，<=0不限制（默认，body可以重复读取）
+         * <p/> 大于0时超出部分不缓存也不解析（不提取分页参数），并且超出部分只能读取一次：
+         * 之后的过滤器、拦截器或者controller再次getInputStream()只能读到截断的body
+         */
+        private int bodyCaptureSize;
+
+        /**
+         * 是否流式扫描请求body，只做脱敏和分页参数提取，不构建对象（accessLogParams中的body为脱敏后的json）
+         */
+        private boolean bodyStreaming;
+
+        /**
+         * 是否异步输出访问日志（启动时生效）
+         * <p/> 异步时响应data、accessLogParams等参数在请求返回之后才由写日志线程序列化（SensitiveJson），持有的是对象引用：
+         * 延迟加载的ORM代理（session已关闭）或者请求返回后还会被修改的对象不适合异步输出
+         */
+        private boolean async;
+
+        /**
+         * 异步日志队列大小（向上取2的幂）
+         */
+        private int asyncQueueSize = 8192;
+
+        /**
+         * 异步日志每批输出的最大条数
+         */
+        private int asyncBatchSize = 256;
+
+        /**
+         * 异步日志队列满时的处理：discard（丢弃并计数）、caller-runs（请求线程直接输出）
+         */
+        private AsyncAccessLogSink.FullPolicy asyncFullPolicy = AsyncAccessLogSink.FullPolicy.DISCARD;
+    }
+
+    @Data
+    public static class LimitConfig {
+
+        /**
+         * 本地限流算法：guava（令牌桶，平滑突发，默认）、sliding-window（滑动窗口计数，与Redis的sliding-counter一致，突发时会一次放行一个窗口的请求）
+         */
+        private String localAlgorithm = "guava";
+
+        /**
+         * sliding-window：最多保存的key数量，超出时先清理空闲的key，仍然超出时新的key直接拒绝
+         */
+        private int localMaxKeys = 100000;
+
+        /**
+         * Redis限流算法：sliding-log（滑动日志，精确）、sliding-counter（两个窗口计数加权，近似）、gcra，后两种每个key占用固定内存；
+         * lease（本地租约，按sliding-counter从Redis批量租借许可）
+         */
+        private String redisAlgorithm = "sliding-log";
+
+        /**
+         * lease：一次最多租借的许可数
+         */
+        private long leaseSize = 100;
+
+        /**
+         * lease：一次最多租借limits的比例，每个节点每个窗口最多少放行这么多
+         */
+        private double leaseRatio = 0.1;
+
+        /**
+         * lease：租约最长有效时间（毫秒），同时不超过当前窗口的结束时间
+         */
+        private long leaseTtl = 1000;
     }
 
     @Data
@@ -254,6 +410,16 @@ public class AccessProperties {
          */
         private String accessPrivateKey;
 
+        /**
+         * accessToken当前密钥id，签名时写入JWT头kid（轮换密钥时修改）
+         */
+        private String accessKeyId;
+
+        /**
+         * accessToken历史验签密钥（kid -> HMAC时为secret，RSA/EC时为公钥），根据JWT头kid选择
+         */
+        private Map<String, String> accessVerificationKeys;
+
         /**
          * refreshToken超时
          */
@@ -273,6 +439,42 @@ public class AccessProperties {
          * refreshToken签名私钥（RSA/EC时使用，支持PEM字符串 或 file:/path/to/key.pem）
          */
         private String refreshPrivateKey;
+
+        /**
+         * refreshToken当前密钥id，签名时写入JWT头kid（轮换密钥时修改）
+         */
+        private String refreshKeyId;
+
+        /**
+         * refreshToken历史验签密钥（kid -> HMAC时为secret，RSA/EC时为公钥），根据JWT头kid选择
+         */
+        private Map<String, String> refreshVerificationKeys;
+
+        /**
+         * 本地缓存验证通过的accessToken的最长时间（秒），0表示不缓存
+         */
+        private int tokenCacheSeconds = 0;
+
+        /**
+         * 本地最多缓存的accessToken数量
+         */
+        private int tokenCacheSize = 10000;
+
+        /**
+         * 启动时是否将之前保存的令牌加入令牌索引（集群内只执行一次）
+         * <p/> 需要在集群所有节点都升级之后再开启，否则旧版本节点之后保存的令牌不在索引中，回收和查询时会遗漏
+         */
+        private boolean tokenIndexMigrate = false;
+
+        /**
+         * accessToken中用户角色、权限、数据权限、用户属性的格式：json（默认）、compact（二进制编码，可配合PermitDictionary）
+         */
+        private String claimsFormat = "json";
+
+        /**
+         * Redis中令牌信息的写入格式：json（默认）、compact（二进制编码），读取时两种格式都支持，可以随时切换
+         */
+        private String tokenInfoFormat = "json";
     }
 
     @Data
@@ -0,0 +1,120 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access;
+
+import org.slf4j.MDC;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * 访问上下文快照，只包含当前Access和MDC，提交任务时捕获，执行时设置并在结束后恢复
+ * <p/> 与TtlRunnable相比不需要复制和回放所有TransmittableThreadLocal，也不依赖线程继承，
+ * 可以用于任意Executor（包括每个任务一个线程的Executor）
+ *
+ * @author shanhuiming
+ */
+public final class AccessSnapshot {
+
+    private static final AccessSnapshot EMPTY = new AccessSnapshot(null, null);
+
+    private final Access access;
+
+    private final Map<String, String> mdcMap;
+
+    private AccessSnapshot(Access access, Map<String, String> mdcMap) {
+        this.access = access;
+        this.mdcMap = mdcMap;
+    }
+
+    /**
+     * 捕获当前线程的上下文
+     */
+    public static AccessSnapshot capture() {
+        Access access = Access.get();
+        Map<String, String> mdcMap = MDC.getCopyOfContextMap();
+        if (access == null && (mdcMap == null || mdcMap.isEmpty())) {
+            return EMPTY;
+        }
+        return new AccessSnapshot(access, mdcMap);
+    }
+
+    /**
+     * 捕获当前上下文并包装任务
+     */
+    public static Runnable wrap(Runnable runnable) {
+        AccessSnapshot snapshot = capture();
+        return () -> snapshot.run(runnable);
+    }
+
+    /**
+     * 捕获当前上下文并包装任务
+     */
+    public static <V> Callable<V> wrap(Callable<V> callable) {
+        AccessSnapshot snapshot = capture();
+        return () -> snapshot.call(callable);
+    }
+
+    /**
+     * 提交时捕获上下文的Executor
+     */
+    public static Executor wrap(Executor executor) {
+        return runnable -> executor.execute(wrap(runnable));
+    }
+
+    public Access getAccess() {
+        return access;
+    }
+
+    /**
+     * 在快照上下文中执行，结束后恢复线程原来的上下文
+     */
+    public void run(Runnable runnable) {
+        Access previous = Access.get();
+        Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+        apply(access, mdcMap);
+        try {
+            runnable.run();
+        } finally {
+            apply(previous, previousMdc);
+        }
+    }
+
+    /**
+     * 在快照上下文中执行，结束后恢复线程原来的上下文
+     */
+    public <V> V call(Callable<V> callable) throws Exception {
+        Access previous = Access.get();
+        Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+        apply(access, mdcMap);
+        try {
+            return callable.call();
+        } finally {
+            apply(previous, previousMdc);
+        }
+    }
+
+    private static void apply(Access access, Map<String, String> mdcMap) {
+        if (access == null) {
+            Access.remove();
+        } else {
+            Access.set(access);
+        }
+        if (mdcMap == null) {
+            MDC.clear(); // 避免线程复用导致问题
+        } else {
+            MDC.setContextMap(mdcMap);
+        }
+    }
+}
@@ -19,6 +19,7 @@ import com.cowave.zoo.http.client.response.Response;
 import com.cowave.zoo.framework.access.Access;
 import com.cowave.zoo.framework.access.AccessLogger;
 import com.cowave.zoo.framework.access.AccessProperties;
+import com.cowave.zoo.framework.access.log.SensitiveJson;
 import com.cowave.zoo.framework.access.security.AccessUserDetails;
 import com.cowave.zoo.tools.ServletUtils;
 import com.cowave.zoo.tools.SpringContext;
@@ -32,7 +33,6 @@ import org.apache.tomcat.util.http.MimeHeaders;
 import org.slf4j.MDC;
 import org.springframework.core.DefaultParameterNameDiscoverer;
 import org.springframework.http.MediaType;
-import org.springframework.util.AntPathMatcher;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -48,7 +48,6 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 import static com.cowave.zoo.framework.access.security.BearerTokenDelegate.*;
 import static com.cowave.zoo.http.client.constants.HttpCode.BAD_REQUEST;
@@ -71,16 +70,22 @@ public class AccessFilter implements Filter {
 
     private final ObjectWriter sensitiveWriter;
 
-    private final AntPathMatcher antPathMatcher = new AntPathMatcher();
-    private final Map<String, Map<String, Set<String>>> sensitiveParamMap = new ConcurrentHashMap<>();
-    private final Map<String, Map<String, Class<?>>> sensitiveBodyMap = new ConcurrentHashMap<>();
+    private final AccessHeaderTemplate accessHeaderTemplate;
+
+    private final SensitiveRouteIndex sensitiveRouteIndex = new SensitiveRouteIndex(10000);
 
     public AccessFilter(TransactionIdSetter transactionIdSetter, AccessIdGenerator accessIdGenerator,
                         AccessProperties accessProperties, ObjectMapper objectMapper) {
+        this(transactionIdSetter, accessIdGenerator, accessProperties, objectMapper, new AccessHeaderTemplate(accessProperties));
+    }
+
+    public AccessFilter(TransactionIdSetter transactionIdSetter, AccessIdGenerator accessIdGenerator,
+                        AccessProperties accessProperties, ObjectMapper objectMapper, AccessHeaderTemplate accessHeaderTemplate) {
         this.transactionIdSetter = transactionIdSetter;
         this.accessIdGenerator = accessIdGenerator;
         this.accessProperties = accessProperties;
         this.objectMapper = objectMapper;
+        this.accessHeaderTemplate = accessHeaderTemplate;
 
         ObjectMapper sensitiveMapper = objectMapper.copy();
         SimpleModule module = new SimpleModule();
@@ -134,42 +139,13 @@ public class AccessFilter implements Filter {
             }
 
             Set<String> urlPatterns = requestMappingInfo.getPathPatternsCondition().getPatternValues();
-
-            // PathPattern → Ant: {*var}→**, {var}→*, 末尾变量额外生成 */  兜底trailing slash
-            Set<String> antPatterns = new HashSet<>();
-            for (String pathPattern : urlPatterns) {
-                String antPattern = pathPattern
-                        .replaceAll("\\{\\*[^}]+}", "**")
-                        .replaceAll("\\{[^}]+}", "*");
-                antPatterns.add(antPattern);
-                if (pathPattern.matches(".*\\{[^}]+}$")) {
-                    antPatterns.add(antPattern + "/");
-                }
-            }
-
             Set<RequestMethod> httpMethods = requestMappingInfo.getMethodsCondition().getMethods();
-            if (httpMethods.isEmpty()) {
-                for (String antPattern : antPatterns) {
-                    if (!paramFields.isEmpty()) {
-                        sensitiveParamMap.computeIfAbsent("ALL",
-                                k -> new HashMap<>()).put(antPattern, paramFields);
-                    }
-                    if (bodyClass != null) {
-                        sensitiveBodyMap.computeIfAbsent("ALL",
-                                k -> new HashMap<>()).put(antPattern, bodyClass);
-                    }
-                }
-            } else {
-                for (RequestMethod httpMethod : httpMethods) {
-                    for (String antPattern : antPatterns) {
-                        if (!paramFields.isEmpty()) {
-                            sensitiveParamMap.computeIfAbsent(httpMethod.name(),
-                                    k -> new HashMap<>()).put(antPattern, paramFields);
-                        }
-                        if (bodyClass != null) {
-                            sensitiveBodyMap.computeIfAbsent(httpMethod.name(),
-                                    k -> new HashMap<>()).put(antPattern, bodyClass);
-                        }
+            for (String pathPattern : urlPatterns) {
+                if (httpMethods.isEmpty()) {
+                    sensitiveRouteIndex.register(SensitiveRouteIndex.ALL, pathPattern, paramFields, bodyClass);
+                } else {
+                    for (RequestMethod httpMethod : httpMethods) {
+                        sensitiveRouteIndex.register(httpMethod.name(), pathPattern, paramFields, bodyClass);
                     }
                 }
             }
@@ -232,16 +208,8 @@ public class AccessFilter implements Filter {
 
         // 设置响应头
         httpServletResponse.setHeader(X_Request_ID, accessId);
-        // 设置响应头 Content-Security-Policy
-        if (StringUtils.isNotBlank(accessProperties.getContentSecurityPolicy())) {
-            httpServletResponse.setHeader(Content_Security_Policy, accessProperties.getContentSecurityPolicy());
-        }
-        // 设置响应头 Access-Control
-        AccessProperties.CrossControl crossControl = accessProperties.getCross();
-        httpServletResponse.setHeader(Access_Control_Allow_Origin, crossControl.getAllowOrigin());
-        httpServletResponse.setHeader(Access_Control_Allow_Methods, crossControl.getAllowMethods());
-        httpServletResponse.setHeader(Access_Control_Allow_Headers, crossControl.getAllowHeaders());
-        httpServletResponse.setHeader(Access_Control_Allow_Credentials, String.valueOf(crossControl.isAllowCredentials()));
+        // 设置响应头 Content-Security-Policy、Access-Control
+        accessHeaderTemplate.apply(httpServletRequest, httpServletResponse);
 
         // 设置MDC.accessId
         MDC.put("accessId", accessId);
@@ -261,12 +229,13 @@ public class AccessFilter implements Filter {
         Access.set(access);
 
         // 日志脱敏信息
-        Set<String> sensitiveParamFields = findMatchingValue(sensitiveParamMap, httpServletRequest);
-        Class<?> sensitiveBodyClass = findMatchingValue(sensitiveBodyMap, httpServletRequest);
+        SensitiveRouteIndex.SensitiveRoute sensitiveRoute =
+                sensitiveRouteIndex.match(httpServletRequest.getMethod(), httpServletRequest.getRequestURI());
 
         // 请求参数、日志
-        AccessRequestWrapper accessRequestWrapper = new AccessRequestWrapper(
-                httpServletRequest, objectMapper, sensitiveWriter, access, sensitiveParamFields, sensitiveBodyClass);
+        AccessRequestWrapper accessRequestWrapper = new AccessRequestWrapper(httpServletRequest, objectMapper,
+                sensitiveWriter, access, sensitiveRoute.getParamFields(), sensitiveRoute.getBodyClass(),
+                accessProperties.getLog());
         try {
             accessRequestWrapper.recordAccessParams();
         } catch (Exception e) {
@@ -296,7 +265,7 @@ public class AccessFilter implements Filter {
             } else {
                 if (!AccessLogger.isInfoEnabled()) {
                     AccessLogger.warn("<< {} {}ms {} {}", status, cost,
-                            access.getAccessUrl(), sensitiveWriter.writeValueAsString(access.getAccessLogParams()));
+                            access.getAccessUrl(), SensitiveJson.of(sensitiveWriter, access.getAccessLogParams()));
                 } else {
                     AccessLogger.warn("<< {} {}ms", status, cost);
                 }
@@ -308,27 +277,6 @@ public class AccessFilter implements Filter {
         MDC.remove("accessId");
     }
 
-    private <T> T findMatchingValue(Map<String, Map<String, T>> map, HttpServletRequest httpServletRequest) {
-        String url = httpServletRequest.getRequestURI();
-        Map<String, T> methodMap = map.get(httpServletRequest.getMethod());
-        if (methodMap != null) {
-            for (Map.Entry<String, T> entry : methodMap.entrySet()) {
-                if (antPathMatcher.match(entry.getKey(), url)) {
-                    return entry.getValue();
-                }
-            }
-        }
-        Map<String, T> allMap = map.get("ALL");
-        if (allMap != null) {
-            for (Map.Entry<String, T> entry : allMap.entrySet()) {
-                if (antPathMatcher.match(entry.getKey(), url)) {
-                    return entry.getValue();
-                }
-            }
-        }
-        return null;
-    }
-
     private void parseAuthorizationIfNeed(Access access) {
         String jwt = Access.getRequestHeader(accessProperties.tokenKey());
         if (StringUtils.isBlank(jwt) || accessProperties.authEnable()) {
@@ -12,11 +12,15 @@
  */
 package com.cowave.zoo.framework.access.filter;
 
+import com.cowave.zoo.framework.access.AccessLogger;
 import com.cowave.zoo.framework.access.AccessProperties;
+import com.cowave.zoo.framework.access.log.AsyncAccessLogSink;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -40,14 +44,29 @@ public class AccessFilterConfiguration {
     private final TransactionIdSetter transactionIdSetter;
 
     @Bean
-    public AccessIdGenerator accessIdGenerator(@Value("${spring.application.cluster-id:10}${server.port:8080}") String idPrefix){
-        return new AccessIdGenerator(idPrefix);
+    public AccessIdGenerator accessIdGenerator(@Value("${spring.application.cluster-id:10}${server.port:8080}") String idPrefix,
+                                               AccessProperties accessProperties){
+        return new AccessIdGenerator(idPrefix, accessProperties.getIdIndexLimit());
     }
 
     @Bean
-    public FilterRegistrationBean<AccessFilter> accessFilterRegistration(AccessIdGenerator accessIdGenerator, AccessProperties accessProperties){
+    @ConditionalOnProperty(name = "spring.access.log.async", havingValue = "true")
+    public AsyncAccessLogSink asyncAccessLogSink(AccessProperties accessProperties){
+        AccessProperties.AccessLog accessLog = accessProperties.getLog();
+        return new AsyncAccessLogSink(LoggerFactory.getLogger(AccessLogger.class),
+                accessLog.getAsyncQueueSize(), accessLog.getAsyncBatchSize(), accessLog.getAsyncFullPolicy());
+    }
+
+    @Bean
+    public AccessHeaderTemplate accessHeaderTemplate(AccessProperties accessProperties){
+        return new AccessHeaderTemplate(accessProperties);
+    }
+
+    @Bean
+    public FilterRegistrationBean<AccessFilter> accessFilterRegistration(AccessIdGenerator accessIdGenerator,
+                                                                         AccessProperties accessProperties, AccessHeaderTemplate accessHeaderTemplate){
         FilterRegistrationBean<AccessFilter> registration = new FilterRegistrationBean<>();
-        registration.setFilter(new AccessFilter(transactionIdSetter, accessIdGenerator, accessProperties, objectMapper));
+        registration.setFilter(new AccessFilter(transactionIdSetter, accessIdGenerator, accessProperties, objectMapper, accessHeaderTemplate));
         registration.setName("accessFilter");
         registration.addUrlPatterns(accessProperties.getFilter());
         registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
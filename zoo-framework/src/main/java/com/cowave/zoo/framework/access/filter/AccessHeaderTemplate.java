@@ -0,0 +1,174 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.filter;
+
+import com.cowave.zoo.framework.access.AccessProperties;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.AntPathMatcher;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.cowave.zoo.http.client.constants.HttpHeader.*;
+
+/**
+ * 响应头模板
+ * <p/> 根据AccessProperties预先生成响应头（包括按路径覆盖的设置），请求时一次性设置；配置刷新后立即重新生成
+ *
+ * @author shanhuiming
+ */
+public class AccessHeaderTemplate {
+
+    private static final int CACHE_SIZE = 10000;
+
+    private final AccessProperties accessProperties;
+
+    private volatile Template template;
+
+    public AccessHeaderTemplate(AccessProperties accessProperties) {
+        this.accessProperties = accessProperties;
+        this.template = new Template(accessProperties);
+    }
+
+    /**
+     * 设置响应头
+     */
+    public void apply(HttpServletRequest request, HttpServletResponse response) {
+        Headers headers = template.match(request.getRequestURI());
+        String[] names = headers.names;
+        String[] values = headers.values;
+        for (int i = 0; i < names.length; i++) {
+            response.setHeader(names[i], values[i]);
+        }
+        if (headers.skipCorsWithoutOrigin && request.getHeader(HttpHeaders.ORIGIN) == null) {
+            return;
+        }
+        names = headers.corsNames;
+        values = headers.corsValues;
+        for (int i = 0; i < names.length; i++) {
+            response.setHeader(names[i], values[i]);
+        }
+    }
+
+    /**
+     * 配置刷新（Apollo/Nacos等）
+     * <p/> 排在ConfigurationPropertiesRebinder之后，此时AccessProperties已经重新绑定
+     */
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @EventListener({EnvironmentChangeEvent.class, RefreshScopeRefreshedEvent.class})
+    public void refresh() {
+        template = new Template(accessProperties);
+    }
+
+    private static class Template {
+
+        private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+        private final Headers defaults;
+
+        private final List<String> patterns = new ArrayList<>();
+
+        private final List<Headers> patternHeaders = new ArrayList<>();
+
+        private final Map<String, Headers> cache = new ConcurrentHashMap<>();
+
+        Template(AccessProperties accessProperties) {
+            this.defaults = new Headers(accessProperties.getContentSecurityPolicy(), accessProperties.getCross(), null);
+            List<AccessProperties.PathHeaders> pathHeadersList = accessProperties.getPathHeaders();
+            if (pathHeadersList == null) {
+                return;
+            }
+            for (AccessProperties.PathHeaders pathHeaders : pathHeadersList) {
+                if (pathHeaders.getPaths() == null) {
+                    continue;
+                }
+                String csp = pathHeaders.getContentSecurityPolicy() != null
+                        ? pathHeaders.getContentSecurityPolicy() : accessProperties.getContentSecurityPolicy();
+                AccessProperties.CrossControl cross = pathHeaders.getCross() != null
+                        ? pathHeaders.getCross() : accessProperties.getCross();
+                Headers headers = new Headers(csp, cross, pathHeaders.getHeaders());
+                for (String path : pathHeaders.getPaths()) {
+                    patterns.add(path);
+                    patternHeaders.add(headers);
+                }
+            }
+        }
+
+        Headers match(String uri) {
+            if (patterns.isEmpty() || uri == null) {
+                return defaults;
+            }
+            Headers headers = cache.get(uri);
+            if (headers != null) {
+                return headers;
+            }
+            headers = defaults;
+            for (int i = 0; i < patterns.size(); i++) {
+                if (pathMatcher.match(patterns.get(i), uri)) {
+                    headers = patternHeaders.get(i);
+                    break;
+                }
+            }
+            // 带路径变量的uri可能无限增长，超过上限直接清掉重新缓存
+            if (cache.size() >= CACHE_SIZE) {
+                cache.clear();
+            }
+            cache.put(uri, headers);
+            return headers;
+        }
+    }
+
+    private static class Headers {
+
+        private final String[] names;
+
+        private final String[] values;
+
+        private final String[] corsNames;
+
+        private final String[] corsValues;
+
+        private final boolean skipCorsWithoutOrigin;
+
+        Headers(String contentSecurityPolicy, AccessProperties.CrossControl cross, Map<String, String> extraHeaders) {
+            Map<String, String> headers = new LinkedHashMap<>();
+            if (StringUtils.isNotBlank(contentSecurityPolicy)) {
+                headers.put(Content_Security_Policy, contentSecurityPolicy);
+            }
+            if (extraHeaders != null) {
+                headers.putAll(extraHeaders);
+            }
+            this.names = headers.keySet().toArray(new String[0]);
+            this.values = headers.values().toArray(new String[0]);
+
+            Map<String, String> corsHeaders = new LinkedHashMap<>();
+            if (cross != null) {
+                corsHeaders.put(Access_Control_Allow_Origin, cross.getAllowOrigin());
+                corsHeaders.put(Access_Control_Allow_Methods, cross.getAllowMethods());
+                corsHeaders.put(Access_Control_Allow_Headers, cross.getAllowHeaders());
+                corsHeaders.put(Access_Control_Allow_Credentials, String.valueOf(cross.isAllowCredentials()));
+            }
+            this.corsNames = corsHeaders.keySet().toArray(new String[0]);
+            this.corsValues = corsHeaders.values().toArray(new String[0]);
+            this.skipCorsWithoutOrigin = cross != null && cross.isSkipWithoutOrigin();
+        }
+    }
+}
@@ -12,22 +12,115 @@
  */
 package com.cowave.zoo.framework.access.filter;
 
-import com.cowave.zoo.tools.ids.IdGenerator;
-import lombok.RequiredArgsConstructor;
+import org.springframework.util.Assert;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
+ * 访问id：前缀 + yyyyMMddHHmmss + 秒内序号
+ * <p/> 格式化后的秒级时间每秒只计算一次，序号每秒从0开始，达到indexLimit后回绕（即每秒最多indexLimit个不重复的id）
  *
  * @author shanhuiming
  *
  */
-@RequiredArgsConstructor
 public class AccessIdGenerator {
 
-    private final IdGenerator idGenerator = new IdGenerator();
+    private static final int DATE_LENGTH = 14;
+
+    private final ZoneId zoneId = ZoneId.systemDefault();
+
+    private final AtomicReference<Second> current = new AtomicReference<>();
+
+    private final ThreadLocal<char[]> buffers;
+
+    private final char[] prefix;
+
+    private final int indexLimit;
 
-    private final String idPrefix;
+    private final int indexWidth;
+
+    private final int length;
+
+    public AccessIdGenerator(String idPrefix) {
+        this(idPrefix, 1000);
+    }
+
+    /**
+     * @param indexLimit 每秒序号上限，序号宽度为 indexLimit - 1 的位数
+     */
+    public AccessIdGenerator(String idPrefix, int indexLimit) {
+        Assert.isTrue(indexLimit > 0, "indexLimit must greater than 0.");
+        this.prefix = idPrefix == null ? new char[0] : idPrefix.toCharArray();
+        this.indexLimit = indexLimit;
+        this.indexWidth = String.valueOf(Math.max(indexLimit - 1, 1)).length();
+        this.length = prefix.length + DATE_LENGTH + indexWidth;
+        this.buffers = ThreadLocal.withInitial(() -> {
+            char[] buf = new char[length];
+            System.arraycopy(prefix, 0, buf, 0, prefix.length);
+            return buf;
+        });
+    }
 
     public String newAccessId() {
-        return idGenerator.generateIdWithDate(idPrefix, "", "yyyyMMddHHmmss", 1000);
+        Second second = currentSecond(System.currentTimeMillis() / 1000);
+        int index = second.counter.getAndIncrement() % indexLimit;
+
+        char[] buf = buffers.get();
+        System.arraycopy(second.date, 0, buf, prefix.length, DATE_LENGTH);
+        for (int i = length - 1; i >= length - indexWidth; i--) {
+            buf[i] = (char) ('0' + index % 10);
+            index /= 10;
+        }
+        return new String(buf);
+    }
+
+    private Second currentSecond(long epochSecond) {
+        Second second = current.get();
+        // 时钟回拨或者并发时读到的是旧的时间，继续使用当前的秒，保证序号不重复
+        while (second == null || second.epochSecond < epochSecond) {
+            Second next = new Second(epochSecond, formatDate(epochSecond));
+            if (current.compareAndSet(second, next)) {
+                return next;
+            }
+            second = current.get();
+        }
+        return second;
+    }
+
+    private char[] formatDate(long epochSecond) {
+        LocalDateTime time = LocalDateTime.ofEpochSecond(epochSecond, 0, zoneId.getRules().getOffset(Instant.ofEpochSecond(epochSecond)));
+        char[] date = new char[DATE_LENGTH];
+        writeDigits(date, 0, 4, time.getYear());
+        writeDigits(date, 4, 2, time.getMonthValue());
+        writeDigits(date, 6, 2, time.getDayOfMonth());
+        writeDigits(date, 8, 2, time.getHour());
+        writeDigits(date, 10, 2, time.getMinute());
+        writeDigits(date, 12, 2, time.getSecond());
+        return date;
+    }
+
+    private static void writeDigits(char[] buf, int offset, int width, int value) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buf[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static class Second {
+
+        private final long epochSecond;
+
+        private final char[] date;
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        Second(long epochSecond, char[] date) {
+            this.epochSecond = epochSecond;
+            this.date = date;
+        }
     }
 }
@@ -14,22 +14,22 @@ package com.cowave.zoo.framework.access.filter;
 
 import com.cowave.zoo.framework.access.Access;
 import com.cowave.zoo.framework.access.AccessLogger;
+import com.cowave.zoo.framework.access.AccessProperties;
+import com.cowave.zoo.framework.access.log.SensitiveJson;
 import com.cowave.zoo.tools.Converts;
-import com.cowave.zoo.tools.ServletUtils;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.RawValue;
 import com.github.pagehelper.page.PageMethod;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.http.MediaType;
 
-import javax.servlet.ReadListener;
 import javax.servlet.ServletInputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletRequestWrapper;
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
@@ -44,8 +44,16 @@ public class AccessRequestWrapper extends HttpServletRequestWrapper {
     private static final String PAGE_NUM = "pageNum";
     private static final String PAGE_NUMBER = "pageNumber";
     private static final String PAGE_SIZE = "pageSize";
+    private static final Set<String> PAGE_FIELDS = Set.of(PAGE, PAGE_INDEX, PAGE_NO, PAGE_NUM, PAGE_NUMBER, PAGE_SIZE);
+    private static final int TRUNCATED_LOG_SIZE = 512;
 
-    private String body = "";
+    private byte[] body;
+
+    private int bodyLength;
+
+    private boolean bodyTruncated;
+
+    private InputStream bodyRemaining;
 
     private final String contentType;
 
@@ -59,61 +67,72 @@ public class AccessRequestWrapper extends HttpServletRequestWrapper {
 
     private final Class<?> sensitiveBodyClass;
 
+    private final boolean bodyStreaming;
+
     public AccessRequestWrapper(HttpServletRequest request, ObjectMapper objectMapper, ObjectWriter sensitiveWriter,
                                 Access access, Set<String> sensitiveParamFields, Class<?> sensitiveBodyClass) throws IOException {
+        this(request, objectMapper, sensitiveWriter, access, sensitiveParamFields, sensitiveBodyClass, new AccessProperties.AccessLog());
+    }
+
+    public AccessRequestWrapper(HttpServletRequest request, ObjectMapper objectMapper, ObjectWriter sensitiveWriter, Access access,
+                                Set<String> sensitiveParamFields, Class<?> sensitiveBodyClass, AccessProperties.AccessLog accessLog) throws IOException {
         super(request);
         this.access = access;
         this.objectMapper = objectMapper;
         this.sensitiveWriter = sensitiveWriter;
         this.sensitiveParamFields = sensitiveParamFields;
         this.sensitiveBodyClass = sensitiveBodyClass;
+        this.bodyStreaming = accessLog.isBodyStreaming();
         this.contentType = getContentType();
         setCharacterEncoding("UTF-8");
-        setCharacterEncoding("UTF-8");
         if (StringUtils.startsWithIgnoreCase(contentType, MediaType.APPLICATION_JSON_VALUE)) {
-            body = ServletUtils.getRequestBody(request);
+            captureBody(request, accessLog.getBodyCaptureSize());
         }
     }
 
-    @Override
-    public BufferedReader getReader() {
-        return new BufferedReader(new InputStreamReader(getInputStream()));
+    private void captureBody(HttpServletRequest request, int bodyCaptureSize) throws IOException {
+        ServletInputStream inputStream = request.getInputStream();
+        int contentLength = request.getContentLength();
+        if (bodyCaptureSize <= 0 || (contentLength >= 0 && contentLength <= bodyCaptureSize)) {
+            body = contentLength >= 0 ? inputStream.readNBytes(contentLength) : inputStream.readAllBytes();
+            bodyLength = body.length;
+            return;
+        }
+        // 多读一个字节，判断是否超出
+        body = inputStream.readNBytes(bodyCaptureSize + 1);
+        bodyLength = body.length;
+        if (bodyLength > bodyCaptureSize) {
+            bodyTruncated = true;
+            bodyRemaining = inputStream;
+        }
     }
 
     @Override
-    public ServletInputStream getInputStream() {
-        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
-        final ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-        return new ServletInputStream() {
-            @Override
-            public int read() {
-                return bais.read();
-            }
-
-            @Override
-            public int available() {
-                return bytes.length;
-            }
-
-            @Override
-            public boolean isFinished() {
-                return false;
-            }
-
-            @Override
-            public boolean isReady() {
-                return false;
-            }
+    public BufferedReader getReader() throws IOException {
+        return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+    }
 
-            @Override
-            public void setReadListener(ReadListener readListener) {
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (body == null) {
+            return super.getInputStream();
+        }
+        if (bodyTruncated) {
+            // 超出缓存的部分只能读取一次
+            return new CachedBodyInputStream(body, bodyLength, bodyRemaining);
+        }
+        return new CachedBodyInputStream(body, bodyLength, null);
+    }
 
-            }
-        };
+    /**
+     * body是否超出缓存大小
+     */
+    public boolean isBodyTruncated() {
+        return bodyTruncated;
     }
 
     @SuppressWarnings("unchecked")
-    public void recordAccessParams() throws JsonProcessingException {
+    public void recordAccessParams() throws IOException {
         String url = getRequestURI();
         String remote = getRemoteAddr();
 
@@ -148,44 +167,73 @@ public class AccessRequestWrapper extends HttpServletRequestWrapper {
 
         // body
         Object bodyObject = null;
-        if (StringUtils.isNotBlank(body)) {
-            if (sensitiveBodyClass != null) {
-                bodyObject = objectMapper.readValue(body, sensitiveBodyClass);
+        Map<String, Object> bodyPageParams = null;
+        if (!bodyTruncated && !isBlank(body, bodyLength)) {
+            if (bodyStreaming) {
+                // 流式扫描，直接得到脱敏后的json
+                SensitiveBodyScanner.ScanResult scanResult =
+                        SensitiveBodyScanner.scan(objectMapper, body, bodyLength, sensitiveBodyClass, PAGE_FIELDS);
+                bodyObject = new RawValue(scanResult.getJson());
+                bodyPageParams = scanResult.getPageParams();
+            } else if (sensitiveBodyClass != null) {
+                bodyObject = objectMapper.readValue(body, 0, bodyLength, sensitiveBodyClass);
             } else {
-                bodyObject = objectMapper.readValue(body, Object.class);
+                bodyObject = objectMapper.readValue(body, 0, bodyLength, Object.class);
             }
         }
 
         Map<String, Object> accessLogParams = new HashMap<>();
-        // 请求日志
-        StringBuilder logBuilder = new StringBuilder();
-        logBuilder.append(">> ").append(getProtocol()).append(" ").append(getMethod()).append(" ").append(url);
+        // 请求日志（参数只传引用，序列化在日志输出时进行）
+        StringBuilder logFormat = new StringBuilder(">> {} {} {}");
+        List<Object> logArgs = new ArrayList<>(8);
+        logArgs.add(getProtocol());
+        logArgs.add(getMethod());
+        logArgs.add(url);
         if (StringUtils.isNotBlank(contentType)) {
-            logBuilder.append(" ").append(contentType);
+            logFormat.append(" {}");
+            logArgs.add(contentType);
         }
-        logBuilder.append(" ").append(remote);
+        logFormat.append(" {}");
+        logArgs.add(remote);
 
         if (!paramMap.isEmpty()) {
             accessLogParams.put("params", paramMap);
-            logBuilder.append(" params=").append(sensitiveWriter.writeValueAsString(paramMap));
+            logFormat.append(" params={}");
+            logArgs.add(SensitiveJson.of(sensitiveWriter, paramMap));
         }
-        if (bodyObject != null) {
+        if (bodyObject instanceof RawValue rawBody) {
+            accessLogParams.put("body", rawBody);
+            logFormat.append(" body={}");
+            logArgs.add(rawBody.rawValue());
+        } else if (bodyObject != null) {
             accessLogParams.put("body", bodyObject);
-            logBuilder.append(" body=").append(sensitiveWriter.writeValueAsString(bodyObject));
+            logFormat.append(" body={}");
+            logArgs.add(SensitiveJson.of(sensitiveWriter, bodyObject));
+        } else if (bodyTruncated) {
+            // 超出缓存大小，不解析，有脱敏字段时只记录大小
+            if (sensitiveBodyClass == null) {
+                logFormat.append(" body={}");
+                logArgs.add(new String(body, 0, Math.min(TRUNCATED_LOG_SIZE, bodyLength), StandardCharsets.UTF_8));
+            }
+            logFormat.append("...(truncated, over {} bytes)");
+            logArgs.add(bodyLength - 1);
         }
-        AccessLogger.info(logBuilder.toString());
+        AccessLogger.info(logFormat.toString(), logArgs.toArray());
 
         // 记录请求参数
         access.setAccessLogParams(accessLogParams);
 
         // 尝试获取分页参数
         Object index = getPageIndex(paramMap);
-        if (index == null && bodyObject instanceof Map bodyMap) {
-            index = getPageIndex(bodyMap);
+        if (bodyPageParams == null && bodyObject instanceof Map bodyMap) {
+            bodyPageParams = bodyMap;
+        }
+        if (index == null && bodyPageParams != null) {
+            index = getPageIndex(bodyPageParams);
         }
         Object size = getPageSize(paramMap);
-        if (size == null && bodyObject instanceof Map bodyMap) {
-            size = getPageSize(bodyMap);
+        if (size == null && bodyPageParams != null) {
+            size = getPageSize(bodyPageParams);
         }
 
         // 记录分页参数
@@ -198,6 +246,18 @@ public class AccessRequestWrapper extends HttpServletRequestWrapper {
         PageMethod.clearPage();
     }
 
+    private static boolean isBlank(byte[] bytes, int length) {
+        if (bytes == null) {
+            return true;
+        }
+        for (int i = 0; i < length; i++) {
+            if (!Character.isWhitespace(bytes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private Object getPageIndex(Map<String, ?> paramMap) {
         Object page = paramMap.get(PAGE);
         if (page == null) {
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.filter;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 基于已缓存body的输入流，缓存读完后继续读取原始流中未缓存的部分（如果有）
+ *
+ * @author shanhuiming
+ */
+class CachedBodyInputStream extends ServletInputStream {
+
+    private final byte[] buf;
+
+    private final int count;
+
+    private final InputStream remaining;
+
+    private int pos;
+
+    private boolean finished;
+
+    CachedBodyInputStream(byte[] buf, int count, InputStream remaining) {
+        this.buf = buf;
+        this.count = count;
+        this.remaining = remaining;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos < count) {
+            return buf[pos++] & 0xff;
+        }
+        return readRemaining(null, 0, 1);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos < count) {
+            int n = Math.min(len, count - pos);
+            System.arraycopy(buf, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+        return readRemaining(b, off, len);
+    }
+
+    private int readRemaining(byte[] b, int off, int len) throws IOException {
+        if (remaining == null || finished) {
+            finished = true;
+            return -1;
+        }
+        int n = b == null ? remaining.read() : remaining.read(b, off, len);
+        if (n < 0) {
+            finished = true;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        if (pos < count) {
+            int skipped = (int) Math.min(n, count - pos);
+            pos += skipped;
+            return skipped;
+        }
+        return remaining == null ? 0 : remaining.skip(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+        int available = count - pos;
+        if (remaining != null && !finished) {
+            available += remaining.available();
+        }
+        return available;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished || (remaining == null && pos >= count);
+    }
+
+    @Override
+    public boolean isReady() {
+        return true;
+    }
+
+    @Override
+    public void setReadListener(ReadListener readListener) {
+
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.filter;
+
+import com.cowave.zoo.framework.access.annotation.Sensitive;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 请求body流式扫描
+ * <p/> 按token顺序拷贝json，同时对@Sensitive字段脱敏、提取顶层分页参数，不构建对象树
+ * <p/> 脱敏按字段名匹配（包括嵌套对象中的字段），同名字段都会被脱敏
+ *
+ * @author shanhuiming
+ */
+final class SensitiveBodyScanner {
+
+    private static final String MASK = "******";
+
+    private static final Map<Class<?>, Set<String>> SENSITIVE_FIELDS = new ConcurrentHashMap<>();
+
+    private SensitiveBodyScanner() {
+
+    }
+
+    static ScanResult scan(ObjectMapper objectMapper, byte[] body, int length,
+                           Class<?> sensitiveBodyClass, Set<String> pageFields) throws IOException {
+        Set<String> sensitiveFields = Collections.emptySet();
+        if (sensitiveBodyClass != null) {
+            sensitiveFields = SENSITIVE_FIELDS.computeIfAbsent(sensitiveBodyClass, clazz -> {
+                Set<String> fields = new HashSet<>();
+                collectSensitiveFields(objectMapper, objectMapper.constructType(clazz), fields, new HashSet<>());
+                return fields;
+            });
+        }
+
+        ScanResult result = new ScanResult();
+        StringWriter writer = new StringWriter(Math.min(length, 8192));
+        try (JsonParser parser = objectMapper.getFactory().createParser(body, 0, length);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(writer)) {
+            int depth = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != null) {
+                switch (token) {
+                    case START_OBJECT, START_ARRAY -> {
+                        depth++;
+                        generator.copyCurrentEvent(parser);
+                    }
+                    case END_OBJECT, END_ARRAY -> {
+                        depth--;
+                        generator.copyCurrentEvent(parser);
+                    }
+                    case FIELD_NAME -> {
+                        String name = parser.currentName();
+                        generator.writeFieldName(name);
+                        JsonToken value = parser.nextToken();
+                        if (sensitiveFields.contains(name)) {
+                            // 与SensitiveBeanPropertyWriter一致，null照常输出
+                            if (value == JsonToken.VALUE_NULL) {
+                                generator.writeNull();
+                            } else {
+                                parser.skipChildren();
+                                generator.writeString(MASK);
+                            }
+                            continue;
+                        }
+                        if (depth == 1 && value.isScalarValue() && pageFields.contains(name)) {
+                            result.pageParams.put(name, parser.getText());
+                        }
+                        if (value.isStructStart()) {
+                            depth++;
+                        }
+                        generator.copyCurrentEvent(parser);
+                    }
+                    default -> generator.copyCurrentEvent(parser);
+                }
+            }
+        }
+        result.json = writer.toString();
+        return result;
+    }
+
+    private static void collectSensitiveFields(ObjectMapper objectMapper, JavaType type, Set<String> fields, Set<Class<?>> visited) {
+        while (type.isContainerType() && type.getContentType() != null) {
+            type = type.getContentType();
+        }
+        Class<?> clazz = type.getRawClass();
+        if (clazz.isPrimitive() || clazz.isEnum() || clazz.getName().startsWith("java.") || !visited.add(clazz)) {
+            return;
+        }
+        BeanDescription beanDesc = objectMapper.getSerializationConfig().introspect(type);
+        for (BeanPropertyDefinition property : beanDesc.findProperties()) {
+            AnnotatedMember member = property.getAccessor();
+            if (member != null && member.hasAnnotation(Sensitive.class)) {
+                fields.add(property.getName());
+            } else {
+                collectSensitiveFields(objectMapper, property.getPrimaryType(), fields, visited);
+            }
+        }
+    }
+
+    @Getter
+    static class ScanResult {
+
+        /**
+         * 脱敏后的json
+         */
+        private String json;
+
+        /**
+         * 顶层分页参数
+         */
+        private final Map<String, Object> pageParams = new HashMap<>();
+    }
+}
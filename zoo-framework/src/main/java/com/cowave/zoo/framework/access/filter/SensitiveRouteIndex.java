@@ -0,0 +1,217 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.filter;
+
+import lombok.Getter;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.AntPathMatcher;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 脱敏路由索引
+ * <p/> 启动时将PathPattern按'/'分段构建成前缀树，请求时按分段查找，匹配结果按 method+uri 缓存；
+ * 只缓存标准的http方法，客户端任意的方法名不缓存，避免缓存无限增长
+ *
+ * @author shanhuiming
+ */
+class SensitiveRouteIndex {
+
+    static final String ALL = "ALL";
+
+    private static final SensitiveRoute NONE = new SensitiveRoute(Collections.emptySet(), null);
+
+    private final AntPathMatcher segmentMatcher = new AntPathMatcher();
+
+    private final Node root = new Node(null);
+
+    private final Map<HttpMethod, Map<String, SensitiveRoute>> routeCache = new EnumMap<>(HttpMethod.class);
+
+    private final int cacheSize;
+
+    private boolean empty = true;
+
+    SensitiveRouteIndex(int cacheSize) {
+        this.cacheSize = cacheSize;
+        // 构造后只读，不需要并发Map
+        for (HttpMethod httpMethod : HttpMethod.values()) {
+            routeCache.put(httpMethod, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * 注册路由
+     *
+     * @param method      http方法，不限方法时为ALL
+     * @param pathPattern Spring PathPattern
+     */
+    void register(String method, String pathPattern, Set<String> paramFields, Class<?> bodyClass) {
+        SensitiveRoute route = new SensitiveRoute(paramFields, bodyClass);
+        Node node = root;
+        for (String segment : pathPattern.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            // {*var} 或 ** 匹配剩余所有分段
+            if ("**".equals(segment) || segment.startsWith("{*")) {
+                node.catchAll = putRoute(node.catchAll, method, route);
+                empty = false;
+                return;
+            }
+            node = node.child(segment);
+        }
+        node.routes = putRoute(node.routes, method, route);
+        empty = false;
+    }
+
+    private Map<String, SensitiveRoute> putRoute(Map<String, SensitiveRoute> routes, String method, SensitiveRoute route) {
+        if (routes == null) {
+            routes = new HashMap<>();
+        }
+        routes.merge(method, route, SensitiveRoute::merge);
+        return routes;
+    }
+
+    /**
+     * 查找路由，优先匹配指定方法，其次匹配ALL
+     */
+    SensitiveRoute match(String method, String uri) {
+        if (empty || uri == null) {
+            return NONE;
+        }
+        HttpMethod httpMethod = HttpMethod.resolve(method);
+        Map<String, SensitiveRoute> methodCache = httpMethod == null ? null : routeCache.get(httpMethod);
+        SensitiveRoute route = methodCache == null ? null : methodCache.get(uri);
+        if (route != null) {
+            return route;
+        }
+
+        route = find(root, uri, 0, method);
+        if (route == null) {
+            route = find(root, uri, 0, ALL);
+        }
+        if (route == null) {
+            route = NONE;
+        }
+        if (methodCache == null) {
+            return route;
+        }
+        // 带路径变量的uri可能无限增长，超过上限直接清掉重新缓存
+        if (methodCache.size() >= cacheSize) {
+            methodCache.clear();
+        }
+        methodCache.put(uri, route);
+        return route;
+    }
+
+    private SensitiveRoute find(Node node, String uri, int from, String method) {
+        int length = uri.length();
+        while (from < length && uri.charAt(from) == '/') {
+            from++;
+        }
+        // 分段已经匹配完（兼容末尾的'/'）
+        if (from >= length) {
+            SensitiveRoute route = node.routes == null ? null : node.routes.get(method);
+            if (route == null && node.catchAll != null) {
+                route = node.catchAll.get(method);
+            }
+            return route;
+        }
+
+        int end = uri.indexOf('/', from);
+        if (end < 0) {
+            end = length;
+        }
+        String segment = uri.substring(from, end);
+        SensitiveRoute route;
+        // 字面量 > 段内通配 > 路径变量 > 剩余匹配
+        Node literal = node.literals.get(segment);
+        if (literal != null && (route = find(literal, uri, end, method)) != null) {
+            return route;
+        }
+        for (Node pattern : node.patterns) {
+            if (segmentMatcher.match(pattern.segment, segment) && (route = find(pattern, uri, end, method)) != null) {
+                return route;
+            }
+        }
+        if (node.wildcard != null && (route = find(node.wildcard, uri, end, method)) != null) {
+            return route;
+        }
+        if (node.catchAll != null) {
+            return node.catchAll.get(method);
+        }
+        return null;
+    }
+
+    private static class Node {
+
+        private final String segment;
+
+        private final Map<String, Node> literals = new HashMap<>();
+
+        private final List<Node> patterns = new ArrayList<>();
+
+        private Node wildcard;
+
+        private Map<String, SensitiveRoute> routes;
+
+        private Map<String, SensitiveRoute> catchAll;
+
+        Node(String segment) {
+            this.segment = segment;
+        }
+
+        Node child(String segment) {
+            // {var}、{var:regex}、*
+            if ("*".equals(segment) || (segment.startsWith("{") && segment.endsWith("}") && segment.indexOf('}') == segment.length() - 1)) {
+                if (wildcard == null) {
+                    wildcard = new Node(segment);
+                }
+                return wildcard;
+            }
+            // 段内通配，比如 {name}.json、*.html、file?.txt
+            if (segment.indexOf('{') >= 0 || segment.indexOf('*') >= 0 || segment.indexOf('?') >= 0) {
+                String antSegment = segment.replaceAll("\\{[^}]+}", "*");
+                for (Node pattern : patterns) {
+                    if (pattern.segment.equals(antSegment)) {
+                        return pattern;
+                    }
+                }
+                Node pattern = new Node(antSegment);
+                patterns.add(pattern);
+                return pattern;
+            }
+            return literals.computeIfAbsent(segment, Node::new);
+        }
+    }
+
+    @Getter
+    static class SensitiveRoute {
+
+        private final Set<String> paramFields;
+
+        private final Class<?> bodyClass;
+
+        SensitiveRoute(Set<String> paramFields, Class<?> bodyClass) {
+            this.paramFields = paramFields;
+            this.bodyClass = bodyClass;
+        }
+
+        SensitiveRoute merge(SensitiveRoute other) {
+            Set<String> fields = new HashSet<>(paramFields);
+            fields.addAll(other.paramFields);
+            return new SensitiveRoute(fields, other.bodyClass != null ? other.bodyClass : bodyClass);
+        }
+    }
+}
@@ -15,6 +15,7 @@ package com.cowave.zoo.framework.access.limit;
 import com.cowave.zoo.framework.access.Access;
 import com.cowave.zoo.framework.access.AccessProperties;
 import com.cowave.zoo.framework.configuration.ApplicationProperties;
+import com.cowave.zoo.framework.support.expression.MethodExpressionEvaluator;
 import com.cowave.zoo.http.client.asserts.HttpHintException;
 import com.cowave.zoo.tools.ServletUtils;
 import lombok.RequiredArgsConstructor;
@@ -25,15 +26,14 @@ import org.aspectj.lang.annotation.Before;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.expression.EvaluationContext;
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.common.TemplateParserContext;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.expression.Expression;
 import org.springframework.stereotype.Component;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.cowave.zoo.http.client.constants.HttpCode.SUCCESS;
 import static com.cowave.zoo.http.client.constants.HttpCode.TOO_MANY_REQUESTS;
@@ -49,7 +49,9 @@ import static com.cowave.zoo.http.client.constants.HttpCode.TOO_MANY_REQUESTS;
 @Component
 public class AccessLimitAcpect {
 
-    private final ExpressionParser exprParser = new SpelExpressionParser();
+    private final MethodExpressionEvaluator exprEvaluator = new MethodExpressionEvaluator();
+
+    private final Map<Method, LimitMeta> limitMetas = new ConcurrentHashMap<>();
 
     private final ApplicationProperties applicationProperties;
 
@@ -70,39 +72,29 @@ public class AccessLimitAcpect {
     @Before("limitPoint()")
     public void limitRequest(JoinPoint point) {
         MethodSignature signature = (MethodSignature)point.getSignature();
-        Method method = signature.getMethod();
-        AccessLimit accessLimit = method.getAnnotation(AccessLimit.class);
+        LimitMeta limitMeta = getLimitMeta(signature.getMethod());
+        AccessLimit accessLimit = limitMeta.accessLimit;
         HttpServletRequest httpServletRequest = Access.httpRequest();
         // url
         assert httpServletRequest != null;
-        String accessUrl = httpServletRequest.getRequestURI();
-        String limitKey = applicationProperties.getName() + ":limit:" + accessUrl;
+        StringBuilder builder = new StringBuilder(128).append(limitMeta.keyPrefix).append(httpServletRequest.getRequestURI());
         // ip
         if(accessLimit.limitWithIp()){
-            String accessIp = ServletUtils.getRequestIp(httpServletRequest);
-            limitKey = limitKey + ":" + accessIp;
+            builder.append(':').append(ServletUtils.getRequestIp(httpServletRequest));
         }
         // user
         if (accessLimit.limitWithUser()) {
             String accessUser = Access.userAccount();
             if (StringUtils.isNotBlank(accessUser)) {
-                limitKey = limitKey + ":" + accessUser;
+                builder.append(':').append(accessUser);
             }
         }
         // spel
-        String keySpel = accessLimit.limitWithKey();
-        if(StringUtils.isNotBlank(keySpel)){
-            EvaluationContext context = new StandardEvaluationContext();
-            Object[] args = point.getArgs();
-            String[] paramNames = signature.getParameterNames();
-            if(paramNames != null) {
-                for (int i = 0; i < args.length; i++) {
-                    context.setVariable(paramNames[i], args[i]);
-                }
-            }
-            String key = exprParser.parseExpression(keySpel, new TemplateParserContext()).getValue(context, String.class);
-            limitKey = limitKey + ":" + key;
+        if(limitMeta.keyExpression != null){
+            EvaluationContext context = exprEvaluator.createContext(limitMeta.method, point.getArgs());
+            builder.append(':').append(limitMeta.keyExpression.getValue(context, String.class));
         }
+        String limitKey = builder.toString();
 
         boolean throughLimit = accessLimiter.throughLimit(limitKey, accessLimit.period(), accessLimit.limits());
         if(throughLimit){
@@ -119,4 +111,34 @@ public class AccessLimitAcpect {
             throw new HttpHintException(TOO_MANY_REQUESTS, accessLimit.message());
         }
     }
+
+    private LimitMeta getLimitMeta(Method method) {
+        LimitMeta limitMeta = limitMetas.get(method);
+        if (limitMeta == null) {
+            limitMeta = limitMetas.computeIfAbsent(method, LimitMeta::new);
+        }
+        return limitMeta;
+    }
+
+    /**
+     * 方法上的限流设置：注解、key前缀、解析好的key表达式
+     */
+    private class LimitMeta {
+
+        private final Method method;
+
+        private final AccessLimit accessLimit;
+
+        private final String keyPrefix;
+
+        private final Expression keyExpression;
+
+        LimitMeta(Method method) {
+            this.method = method;
+            this.accessLimit = method.getAnnotation(AccessLimit.class);
+            this.keyPrefix = applicationProperties.getName() + ":limit:";
+            String keySpel = accessLimit.limitWithKey();
+            this.keyExpression = StringUtils.isNotBlank(keySpel) ? exprEvaluator.getTemplate(method, keySpel) : null;
+        }
+    }
 }
@@ -12,6 +12,7 @@
  */
 package com.cowave.zoo.framework.access.limit;
 
+import com.cowave.zoo.framework.access.AccessProperties;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.context.annotation.Bean;
@@ -26,7 +27,11 @@ public class GuavaAccessLimiterConfiguration {
 
     @ConditionalOnMissingBean(AccessLimiter.class)
     @Bean
-    public AccessLimiter accessLimiter(){
+    public AccessLimiter accessLimiter(AccessProperties accessProperties){
+        AccessProperties.LimitConfig limitConfig = accessProperties.getLimit();
+        if ("sliding-window".equalsIgnoreCase(limitConfig.getLocalAlgorithm())) {
+            return new SlidingWindowAccessLimiter(limitConfig.getLocalMaxKeys());
+        }
         return new GuavaAccessLimiter();
     }
 }
@@ -0,0 +1,320 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.limit;
+
+import com.cowave.zoo.framework.helper.redis.StringRedisHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地租约 + Redis限流
+ * <p/> 从Redis（滑动窗口计数，与sliding-counter一致）一次租借一批许可放到本地，用完或者租约过期（不超过当前窗口结束）才再次访问Redis；
+ * 租约中未用完的许可不会归还，所以每个节点每个窗口最多少放行一个租约的数量，这个误差由租约大小控制
+ * <p/> Redis拒绝时，在一个发放间隔（period/limits）内直接本地拒绝，避免被拒绝的请求持续访问Redis
+ * <p/> 每个key同时只有一个线程续租，续租期间其它请求使用租约剩余的许可，没有则直接拒绝，不等待Redis；
+ * 租约剩余降到1/4时在后台线程提前续租，请求继续使用剩余的许可，剩余的许可合并到新租约，所以正常情况下续租期间还有许可可用
+ *
+ * @author shanhuiming
+ *
+ */
+@Slf4j
+public class LeasedRedisAccessLimiter implements AccessLimiter {
+
+    // 以毫秒为单位，返回 {租到的数量, 当前窗口剩余毫秒}
+    public static final String LUA_LEASE = """
+            local key = KEYS[1]
+            local limit = tonumber(ARGV[1])
+            local window = tonumber(ARGV[2])
+            local want = tonumber(ARGV[3])
+            local nowData = redis.call("TIME")
+            local now = (nowData[1] * 1000) + math.floor(nowData[2] / 1000)
+            local current = math.floor(now / window)
+            local remain = window - (now % window)
+
+            local data = redis.call("HMGET", key, "w", "c", "p")
+            local w = tonumber(data[1])
+            local c = tonumber(data[2]) or 0
+            local p = tonumber(data[3]) or 0
+            if w == nil then
+               c = 0
+               p = 0
+            elseif w == current - 1 then
+               p = c
+               c = 0
+            elseif w < current - 1 then
+               p = 0
+               c = 0
+            elseif w > current then
+               current = w
+            end
+
+            local weight = 1 - (now % window) / window
+            local available = math.floor(limit - p * weight - c)
+            if available <= 0 then
+               return {0, remain}
+            end
+            local granted = math.min(want, available)
+            redis.call("HSET", key, "w", current, "c", c + granted, "p", p)
+            redis.call("PEXPIRE", key, window * 2)
+            return {granted, remain}
+            """;
+
+    private static final RedisScript<List> LEASE_SCRIPT = RedisScript.of(LUA_LEASE, List.class);
+
+    private static final int CLEAN_INTERVAL = 4096;
+
+    private static final int PREFETCH_QUEUE = 1024;
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+    private final AtomicLong calls = new AtomicLong();
+
+    private final AtomicBoolean cleaning = new AtomicBoolean();
+
+    private final StringRedisHelper stringRedisHelper;
+
+    private final long leaseSize;
+
+    private final double leaseRatio;
+
+    private final long leaseTtlNanos;
+
+    private final int maxKeys;
+
+    private final ThreadPoolExecutor prefetcher;
+
+    /**
+     * @param leaseSize  一次最多租借的许可数
+     * @param leaseRatio 一次最多租借limits的比例（精度），实际租借数 = max(1, min(leaseSize, limits * leaseRatio))
+     * @param leaseTtl   租约最长有效时间（毫秒），同时不超过当前窗口的结束时间
+     * @param maxKeys    本地最多保存的key数量
+     */
+    public LeasedRedisAccessLimiter(StringRedisHelper stringRedisHelper,
+                                    long leaseSize, double leaseRatio, long leaseTtl, int maxKeys) {
+        this.stringRedisHelper = stringRedisHelper;
+        this.leaseSize = Math.max(1, leaseSize);
+        this.leaseRatio = leaseRatio;
+        this.leaseTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, leaseTtl));
+        this.maxKeys = maxKeys;
+        this.prefetcher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(PREFETCH_QUEUE), r -> {
+            Thread thread = new Thread(r, "access-lease-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void shutdown() {
+        prefetcher.shutdownNow();
+    }
+
+    @Override
+    public boolean throughLimit(String limitKey, long period, long limits) {
+        if (limits <= 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        Slot slot = slots.get(limitKey);
+        if (slot == null) {
+            slot = slots.computeIfAbsent(limitKey, k -> new Slot());
+        }
+        if ((calls.incrementAndGet() & (CLEAN_INTERVAL - 1)) == 0 || slots.size() > maxKeys) {
+            clean(now);
+        }
+
+        Lease lease = slot.lease;
+        if (lease != null && lease.valid(period, limits, now)) {
+            long left = lease.take();
+            if (left >= 0) {
+                if (left == lease.lowWater && !lease.denied) {
+                    // 只有一个线程会恰好取到低水位，由它提交后台续租
+                    prefetch(slot, limitKey, period, limits);
+                }
+                return true;
+            }
+            if (lease.denied) {
+                return false;
+            }
+        }
+        return renew(slot, limitKey, period, limits);
+    }
+
+    /**
+     * 后台续租，请求线程不访问Redis；正在续租或者队列已满时忽略
+     */
+    private void prefetch(Slot slot, String limitKey, long period, long limits) {
+        if (!slot.renewing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            prefetcher.execute(() -> {
+                try {
+                    lease(slot, limitKey, period, limits, true);
+                } catch (Exception e) {
+                    // 旧租约剩余的许可继续用，用完时同步续租
+                    log.warn("Access lease prefetch failed, {}", limitKey, e);
+                } finally {
+                    slot.renewing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            slot.renewing.set(false);
+        }
+    }
+
+    private boolean renew(Slot slot, String limitKey, long period, long limits) {
+        if (!slot.renewing.compareAndSet(false, true)) {
+            // 其它线程正在续租，不等待Redis：使用租约剩余的许可，没有则直接拒绝
+            Lease lease = slot.lease;
+            return lease != null && lease.valid(period, limits, System.nanoTime()) && lease.take() >= 0;
+        }
+        try {
+            Lease lease = slot.lease;
+            if (lease != null && lease.valid(period, limits, System.nanoTime())) {
+                // 其它线程可能已经续租
+                if (lease.take() >= 0) {
+                    return true;
+                }
+                if (lease.denied) {
+                    return false;
+                }
+            }
+            return lease(slot, limitKey, period, limits, false);
+        } finally {
+            slot.renewing.set(false);
+        }
+    }
+
+    /**
+     * 从Redis租借许可，调用方需要持有slot.renewing
+     *
+     * @param prefetch 是否提前续租（不为当前请求取许可）
+     */
+    @SuppressWarnings("unchecked")
+    private boolean lease(Slot slot, String limitKey, long period, long limits, boolean prefetch) {
+        long want = Math.max(1, Math.min(leaseSize, (long) (limits * leaseRatio)));
+        List<Long> result = stringRedisHelper.luaExec(LEASE_SCRIPT, Collections.singletonList(limitKey),
+                String.valueOf(limits), String.valueOf(period), String.valueOf(want));
+        long granted = result == null || result.isEmpty() ? 0 : result.get(0);
+        long remainNanos = result == null || result.size() < 2
+                ? TimeUnit.MILLISECONDS.toNanos(period) : TimeUnit.MILLISECONDS.toNanos(result.get(1));
+
+        long now = System.nanoTime();
+        if (granted <= 0) {
+            if (prefetch) {
+                // 旧租约剩余的许可继续用，用完再访问Redis
+                return true;
+            }
+            // 一个发放间隔后再访问Redis
+            long intervalNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(period) / limits);
+            slot.lease = new Lease(period, limits, 0, true, now + Math.min(intervalNanos, remainNanos));
+            return false;
+        }
+
+        // 旧租约剩余的许可已经在Redis中计数，合并到新租约
+        long carry = 0;
+        Lease lease = slot.lease;
+        if (lease != null && !lease.denied && lease.valid(period, limits, now)) {
+            carry = lease.drain();
+        }
+        long remaining = prefetch ? granted + carry : granted + carry - 1;
+        slot.lease = new Lease(period, limits, remaining, granted / 4, false, now + Math.min(leaseTtlNanos, remainNanos));
+        return true;
+    }
+
+    private void clean(long now) {
+        if (!cleaning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Iterator<Slot> iterator = slots.values().iterator();
+            while (iterator.hasNext()) {
+                Lease lease = iterator.next().lease;
+                if (lease == null || now >= lease.expireAt) {
+                    iterator.remove();
+                }
+            }
+            int lowWater = maxKeys - maxKeys / 10;
+            iterator = slots.values().iterator();
+            while (slots.size() > lowWater && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        } finally {
+            cleaning.set(false);
+        }
+    }
+
+    private static class Slot {
+
+        private final AtomicBoolean renewing = new AtomicBoolean();
+
+        private volatile Lease lease;
+    }
+
+    private static class Lease {
+
+        private final long period;
+
+        private final long limits;
+
+        private final AtomicLong remaining;
+
+        private final long lowWater;
+
+        private final boolean denied;
+
+        private final long expireAt;
+
+        Lease(long period, long limits, long remaining, boolean denied, long expireAt) {
+            this(period, limits, remaining, -1, denied, expireAt);
+        }
+
+        Lease(long period, long limits, long remaining, long lowWater, boolean denied, long expireAt) {
+            this.period = period;
+            this.limits = limits;
+            this.remaining = new AtomicLong(remaining);
+            this.lowWater = lowWater;
+            this.denied = denied;
+            this.expireAt = expireAt;
+        }
+
+        boolean valid(long period, long limits, long now) {
+            return this.period == period && this.limits == limits && now < expireAt;
+        }
+
+        /**
+         * @return 取到许可后剩余的数量，没有许可时返回-1
+         */
+        long take() {
+            long left = remaining.decrementAndGet();
+            return left >= 0 ? left : -1;
+        }
+
+        long drain() {
+            return Math.max(0, remaining.getAndSet(0));
+        }
+    }
+}
@@ -13,18 +13,27 @@
 package com.cowave.zoo.framework.access.limit;
 
 import com.cowave.zoo.framework.helper.redis.StringRedisHelper;
-import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.script.RedisScript;
 
 import java.util.Collections;
 
 /**
+ * Redis限流，算法：
+ * <p/> sliding-log：滑动日志（ZSET），精确，但每个key保存limits个成员
+ * <p/> sliding-counter：滑动窗口计数（当前窗口和上一个窗口两个计数按时间加权），近似，每个key固定3个字段
+ * <p/> gcra：通用信元速率算法，允许limits个突发，之后按period/limits的间隔放行，每个key只保存一个时间
  *
  * @author shanhuiming
  *
  */
-@RequiredArgsConstructor
 public class RedisAccessLimiter implements AccessLimiter {
 
+    public static final String SLIDING_LOG = "sliding-log";
+
+    public static final String SLIDING_COUNTER = "sliding-counter";
+
+    public static final String GCRA = "gcra";
+
     // 以微秒为单位进行限制
     public static final String LUA_SCRIPT = """
             local key = KEYS[1]     
@@ -44,11 +53,85 @@ public class RedisAccessLimiter implements AccessLimiter {
             end
             """;
 
+    // 以毫秒为单位进行限制，hash字段：w 当前窗口序号，c 当前窗口计数，p 上一个窗口计数
+    public static final String LUA_SLIDING_COUNTER = """
+            local key = KEYS[1]
+            local limit = tonumber(ARGV[1])
+            local window = tonumber(ARGV[2])
+            local nowData = redis.call("TIME")
+            local now = (nowData[1] * 1000) + math.floor(nowData[2] / 1000)
+            local current = math.floor(now / window)
+
+            local data = redis.call("HMGET", key, "w", "c", "p")
+            local w = tonumber(data[1])
+            local c = tonumber(data[2]) or 0
+            local p = tonumber(data[3]) or 0
+            if w == nil then
+               c = 0
+               p = 0
+            elseif w == current - 1 then
+               p = c
+               c = 0
+            elseif w < current - 1 then
+               p = 0
+               c = 0
+            elseif w > current then
+               current = w
+            end
+
+            local weight = 1 - (now % window) / window
+            if p * weight + c >= limit then
+               return 0
+            end
+            redis.call("HSET", key, "w", current, "c", c + 1, "p", p)
+            redis.call("PEXPIRE", key, window * 2)
+            return 1
+            """;
+
+    // 以微秒为单位进行限制，key中保存理论到达时间（TAT）
+    public static final String LUA_GCRA = """
+            local key = KEYS[1]
+            local limit = tonumber(ARGV[1])
+            local period = tonumber(ARGV[2]) * 1000
+            local nowData = redis.call("TIME")
+            local now = (nowData[1] * 1000000) + nowData[2]
+            local interval = period / limit
+
+            local tat = tonumber(redis.call("GET", key))
+            if tat == nil or tat < now then
+               tat = now
+            end
+            if now < tat - period + interval then
+               return 0
+            end
+            local newTat = tat + interval
+            redis.call("SET", key, string.format("%.3f", newTat), "PX", math.max(1, math.ceil((newTat - now) / 1000)))
+            return 1
+            """;
+
     private final StringRedisHelper stringRedisHelper;
 
+    private final RedisScript<Long> script;
+
+    public RedisAccessLimiter(StringRedisHelper stringRedisHelper) {
+        this(stringRedisHelper, SLIDING_LOG);
+    }
+
+    public RedisAccessLimiter(StringRedisHelper stringRedisHelper, String algorithm) {
+        this.stringRedisHelper = stringRedisHelper;
+        if (SLIDING_COUNTER.equalsIgnoreCase(algorithm)) {
+            this.script = RedisScript.of(LUA_SLIDING_COUNTER, Long.class);
+        } else if (GCRA.equalsIgnoreCase(algorithm)) {
+            this.script = RedisScript.of(LUA_GCRA, Long.class);
+        } else {
+            this.script = RedisScript.of(LUA_SCRIPT, Long.class);
+        }
+    }
+
     @Override
     public boolean throughLimit(String limitKey, long period, long limits) {
-        return stringRedisHelper.luaExec(LUA_SCRIPT, Long.class,
-                Collections.singletonList(limitKey), String.valueOf(limits), String.valueOf(period)) > 0;
+        Long result = stringRedisHelper.luaExec(script,
+                Collections.singletonList(limitKey), String.valueOf(limits), String.valueOf(period));
+        return result != null && result > 0;
     }
 }
@@ -12,6 +12,7 @@
  */
 package com.cowave.zoo.framework.access.limit;
 
+import com.cowave.zoo.framework.access.AccessProperties;
 import com.cowave.zoo.framework.helper.redis.RedisAutoConfiguration;
 import com.cowave.zoo.framework.helper.redis.StringRedisHelper;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
@@ -33,7 +34,12 @@ public class RedisAccessLimiterConfiguration {
     @ConditionalOnBean(StringRedisHelper.class)
     @ConditionalOnMissingBean(AccessLimiter.class)
     @Bean
-    public AccessLimiter accessLimiter(StringRedisHelper stringRedisHelper){
-        return new RedisAccessLimiter(stringRedisHelper);
+    public AccessLimiter accessLimiter(StringRedisHelper stringRedisHelper, AccessProperties accessProperties){
+        AccessProperties.LimitConfig limitConfig = accessProperties.getLimit();
+        if ("lease".equalsIgnoreCase(limitConfig.getRedisAlgorithm())) {
+            return new LeasedRedisAccessLimiter(stringRedisHelper, limitConfig.getLeaseSize(),
+                    limitConfig.getLeaseRatio(), limitConfig.getLeaseTtl(), limitConfig.getLocalMaxKeys());
+        }
+        return new RedisAccessLimiter(stringRedisHelper, limitConfig.getRedisAlgorithm());
     }
 }
@@ -0,0 +1,187 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.limit;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地滑动窗口限流（近似）：当前窗口和上一个窗口两个计数按时间加权，近似任意period时间内最多通过limits个请求，被拒绝的请求不计数，
+ * 与RedisAccessLimiter的sliding-counter算法一致（Redis默认的sliding-log是精确的滑动日志）
+ * <p/> 每个key只有一个long（窗口序号与两个计数打包），通过CAS更新，不加锁；单个窗口的limits最大按{@link Window#MAX_COUNT}计算
+ * <p/> 两个窗口内都没有请求的key定期或者在key数量超过上限时被移除，活跃的key不会被移除（否则计数被重置，等于放开限流）；
+ * 清理后仍然达到上限时，新的key直接拒绝，直到有key空闲被清理
+ *
+ * @author shanhuiming
+ *
+ */
+public class SlidingWindowAccessLimiter implements AccessLimiter {
+
+    private static final int CLEAN_INTERVAL = 4096;
+
+    private final long baseNanos = System.nanoTime();
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    private final AtomicLong calls = new AtomicLong();
+
+    private final AtomicBoolean cleaning = new AtomicBoolean();
+
+    private final int maxKeys;
+
+    public SlidingWindowAccessLimiter(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    @Override
+    public boolean throughLimit(String limitKey, long period, long limits) {
+        if (limits <= 0) {
+            return false;
+        }
+        long now = nowMillis();
+        if ((calls.incrementAndGet() & (CLEAN_INTERVAL - 1)) == 0) {
+            clean(now);
+        }
+        Window window = windows.get(limitKey);
+        if (window == null || window.period != period || window.limits != limits) {
+            window = getWindow(limitKey, period, limits, now);
+            if (window == null) {
+                return false;
+            }
+        }
+        return window.tryAcquire(now);
+    }
+
+    private Window getWindow(String limitKey, long period, long limits, long now) {
+        Window window = windows.get(limitKey);
+        if (window == null) {
+            window = newWindow(limitKey, period, limits, now);
+            if (window == null) {
+                return null;
+            }
+        }
+        if (window.period == period && window.limits == limits) {
+            return window;
+        }
+        // 同一个key使用了不同的限流参数（比如同一url的不同method），区分开
+        String key = limitKey + "_" + period + "_" + limits;
+        Window paramWindow = windows.get(key);
+        return paramWindow != null ? paramWindow : newWindow(key, period, limits, now);
+    }
+
+    /**
+     * @return 清理后仍然达到上限时返回null
+     */
+    private Window newWindow(String key, long period, long limits, long now) {
+        if (windows.size() >= maxKeys) {
+            clean(now);
+            if (windows.size() >= maxKeys) {
+                // 不丢弃活跃的key（会放开它们的限流），也不让不相关的key共用窗口，新的key直接拒绝
+                return null;
+            }
+        }
+        return windows.computeIfAbsent(key, k -> new Window(period, limits, now));
+    }
+
+    private long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - baseNanos);
+    }
+
+    /**
+     * 只清理两个窗口内都没有请求的key，清理这些key不会影响限流结果
+     */
+    private void clean(long now) {
+        if (!cleaning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Iterator<Window> iterator = windows.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isIdle(now)) {
+                    iterator.remove();
+                }
+            }
+        } finally {
+            cleaning.set(false);
+        }
+    }
+
+    /**
+     * 状态打包在一个long中：窗口序号低24位 | 当前窗口计数20位 | 上一个窗口计数20位
+     */
+    static class Window {
+
+        static final long MAX_COUNT = (1L << 20) - 1;
+
+        private static final long WINDOW_MASK = (1L << 24) - 1;
+
+        private final long period;
+
+        private final long limits;
+
+        private final long size;
+
+        private final long maxCount;
+
+        private final AtomicLong state;
+
+        Window(long period, long limits, long now) {
+            this.period = period;
+            this.limits = limits;
+            this.size = Math.max(period, 1);
+            this.maxCount = Math.min(limits, MAX_COUNT);
+            this.state = new AtomicLong(pack(now / size, 0, 0));
+        }
+
+        boolean tryAcquire(long now) {
+            long w = now / size;
+            double weight = 1 - (double) (now % size) / size;
+            while (true) {
+                long s = state.get();
+                long current = s >>> 40;
+                long count = (s >>> 20) & MAX_COUNT;
+                long previous = s & MAX_COUNT;
+                long distance = (w - current) & WINDOW_MASK;
+                if (distance == 1) {
+                    previous = count;
+                    count = 0;
+                    current = w;
+                } else if (distance > 1 && distance <= WINDOW_MASK / 2) {
+                    previous = 0;
+                    count = 0;
+                    current = w;
+                }
+                // distance为0是同一窗口；超过一半说明其它线程已经进入了下一个窗口，按当前状态计算
+                if (previous * weight + count >= maxCount) {
+                    return false;
+                }
+                if (state.compareAndSet(s, pack(current, count + 1, previous))) {
+                    return true;
+                }
+            }
+        }
+
+        boolean isIdle(long now) {
+            long distance = (now / size - (state.get() >>> 40)) & WINDOW_MASK;
+            return distance > 1 && distance <= WINDOW_MASK / 2;
+        }
+
+        private static long pack(long window, long count, long previous) {
+            return ((window & WINDOW_MASK) << 40) | (count << 20) | previous;
+        }
+    }
+}
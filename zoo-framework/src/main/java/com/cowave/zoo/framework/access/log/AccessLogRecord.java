@@ -0,0 +1,40 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.log;
+
+import org.slf4j.event.Level;
+
+import java.util.Map;
+
+/**
+ * 访问日志记录，只持有参数引用和提交时的MDC副本，格式化和序列化都在写日志线程中进行
+ *
+ * @author shanhuiming
+ */
+class AccessLogRecord {
+
+    final Map<String, String> mdc;
+
+    final Level level;
+
+    final String format;
+
+    final Object[] arguments;
+
+    AccessLogRecord(Map<String, String> mdc, Level level, String format, Object[] arguments) {
+        this.mdc = mdc;
+        this.level = level;
+        this.format = format;
+        this.arguments = arguments;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.log;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.MDC;
+import org.slf4j.event.Level;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步访问日志
+ * <p/> 请求线程只把日志记录（MDC副本、格式、参数引用）放入无锁环形队列，由后台线程批量取出后再做脱敏序列化和输出；
+ * 队列满时根据策略丢弃或者由请求线程直接输出，丢弃数量会被统计并周期性的打印出来
+ * <p/> 队列为空时后台线程一直挂起，直到有日志提交时被唤醒
+ *
+ * @author shanhuiming
+ */
+public class AsyncAccessLogSink implements MeterBinder, DisposableBean {
+
+    private static final long DROP_REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    private final Logger logger;
+
+    private final MpscRingBuffer<AccessLogRecord> ringBuffer;
+
+    private final int batchSize;
+
+    private final FullPolicy fullPolicy;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder written = new LongAdder();
+
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    /**
+     * 写日志线程准备挂起，提交日志后需要唤醒
+     */
+    private volatile boolean sleeping;
+
+    public AsyncAccessLogSink(Logger logger, int queueSize, int batchSize, FullPolicy fullPolicy) {
+        this.logger = logger;
+        this.ringBuffer = new MpscRingBuffer<>(Math.max(queueSize, 2));
+        this.batchSize = Math.max(batchSize, 1);
+        this.fullPolicy = fullPolicy;
+        this.writer = new Thread(this::writeLoop, "access-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * 提交日志
+     */
+    public void submit(Level level, String format, Object... arguments) {
+        AccessLogRecord record = new AccessLogRecord(MDC.getCopyOfContextMap(), level, format, arguments);
+        if (running && ringBuffer.offer(record)) {
+            if (sleeping) {
+                sleeping = false;
+                LockSupport.unpark(writer);
+            }
+            return;
+        }
+        if (fullPolicy == FullPolicy.CALLER_RUNS) {
+            write(record);
+        } else {
+            dropped.increment();
+        }
+    }
+
+    private void writeLoop() {
+        List<AccessLogRecord> batch = new ArrayList<>(batchSize);
+        long reportedDropped = 0;
+        long lastReportTime = System.nanoTime();
+        while (running || ringBuffer.size() > 0) {
+            if (ringBuffer.drainTo(batch, batchSize) == 0) {
+                // 空闲前打印丢弃数，挂起期间不会有新的丢弃
+                reportedDropped = reportDropped(reportedDropped);
+                lastReportTime = System.nanoTime();
+                idle();
+                continue;
+            }
+            for (AccessLogRecord record : batch) {
+                write(record);
+            }
+            batch.clear();
+
+            long now = System.nanoTime();
+            if (now - lastReportTime >= DROP_REPORT_INTERVAL) {
+                lastReportTime = now;
+                reportedDropped = reportDropped(reportedDropped);
+            }
+        }
+    }
+
+    /**
+     * 先声明要挂起再检查队列（tail的CAS与sleeping都是volatile），提交方要么看到sleeping并唤醒，要么这里看到新的日志不挂起
+     */
+    private void idle() {
+        sleeping = true;
+        if (ringBuffer.size() > 0 || !running) {
+            sleeping = false;
+            // 已经入队但还没有发布，稍等即可
+            Thread.onSpinWait();
+            return;
+        }
+        LockSupport.park(this);
+        sleeping = false;
+    }
+
+    private long reportDropped(long reportedDropped) {
+        long droppedCount = dropped.sum();
+        if (droppedCount > reportedDropped) {
+            logger.warn("access log queue is full, {} records dropped", droppedCount - reportedDropped);
+        }
+        return droppedCount;
+    }
+
+    private void write(AccessLogRecord record) {
+        // 请求线程直接输出时（caller-runs）需要恢复它自己的MDC
+        Map<String, String> callerMdc = Thread.currentThread() != writer ? MDC.getCopyOfContextMap() : null;
+        if (record.mdc != null) {
+            MDC.setContextMap(record.mdc);
+        } else {
+            MDC.clear();
+        }
+        try {
+            switch (record.level) {
+                case ERROR -> logger.error(record.format, record.arguments);
+                case WARN -> logger.warn(record.format, record.arguments);
+                case DEBUG -> logger.debug(record.format, record.arguments);
+                case TRACE -> logger.trace(record.format, record.arguments);
+                default -> logger.info(record.format, record.arguments);
+            }
+            written.increment();
+        } catch (Exception e) {
+            // 单条日志异常不能影响写日志线程
+            dropped.increment();
+        } finally {
+            if (callerMdc != null) {
+                MDC.setContextMap(callerMdc);
+            } else {
+                MDC.clear();
+            }
+        }
+    }
+
+    /**
+     * 丢弃的日志数
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * 已输出的日志数
+     */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * 队列中待输出的日志数
+     */
+    public int getPendingCount() {
+        return ringBuffer.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("access.log.pending", this, AsyncAccessLogSink::getPendingCount)
+                .description("access log records waiting to be written").register(registry);
+        Gauge.builder("access.log.capacity", ringBuffer, MpscRingBuffer::capacity)
+                .description("access log queue capacity").register(registry);
+        FunctionCounter.builder("access.log.dropped", this, AsyncAccessLogSink::getDroppedCount)
+                .description("access log records dropped").register(registry);
+        FunctionCounter.builder("access.log.written", this, AsyncAccessLogSink::getWrittenCount)
+                .description("access log records written").register(registry);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        // 尽量输出完队列中剩余的日志
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * 队列满时的处理策略
+     */
+    public enum FullPolicy {
+
+        /**
+         * 丢弃并计数
+         */
+        DISCARD,
+
+        /**
+         * 由请求线程直接输出
+         */
+        CALLER_RUNS
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.log;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * 日志参数，在日志真正输出时才做脱敏序列化（异步模式下在写日志线程中执行）
+ *
+ * @author shanhuiming
+ */
+public final class SensitiveJson {
+
+    private final ObjectWriter sensitiveWriter;
+
+    private final Object value;
+
+    private String json;
+
+    private SensitiveJson(ObjectWriter sensitiveWriter, Object value) {
+        this.sensitiveWriter = sensitiveWriter;
+        this.value = value;
+    }
+
+    public static SensitiveJson of(ObjectWriter sensitiveWriter, Object value) {
+        return new SensitiveJson(sensitiveWriter, value);
+    }
+
+    @Override
+    public String toString() {
+        if (json == null) {
+            try {
+                json = sensitiveWriter.writeValueAsString(value);
+            } catch (JsonProcessingException e) {
+                json = "<serialize failed: " + e.getOriginalMessage() + ">";
+            }
+        }
+        return json;
+    }
+}
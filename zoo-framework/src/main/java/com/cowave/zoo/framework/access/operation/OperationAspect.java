@@ -13,6 +13,7 @@
 package com.cowave.zoo.framework.access.operation;
 
 import com.cowave.zoo.framework.access.Access;
+import com.cowave.zoo.framework.support.expression.MethodExpressionEvaluator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
@@ -24,9 +25,7 @@ import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.expression.EvaluationContext;
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.common.TemplateParserContext;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.Expression;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.stereotype.Component;
 import org.springframework.validation.BeanPropertyBindingResult;
@@ -36,6 +35,7 @@ import org.springframework.web.servlet.mvc.method.annotation.ExtendedServletRequ
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -50,7 +50,7 @@ import java.util.Map;
 @Component
 public class OperationAspect {
 
-    private final ExpressionParser exprParser = new SpelExpressionParser();
+    private final MethodExpressionEvaluator exprEvaluator = new MethodExpressionEvaluator();
 
     private final ApplicationContext applicationContext;
 
@@ -88,10 +88,10 @@ public class OperationAspect {
         context.setVariable("content", operationInfo.getOpContent());
 
         operationInfo.setSuccess(true);
-        operationInfo.setDesc(parseDesc(operation, context));
+        operationInfo.setDesc(parseDesc(joinPoint, operation, context));
         context.setVariable("opInfo", operationInfo);
         if (specifyHandle) {
-            handleOperation(operation, context);
+            handleOperation(joinPoint, operation, context);
         } else {
             defaultHandle(joinPoint, operation, operationInfo, argMap, resp, null);
         }
@@ -111,24 +111,32 @@ public class OperationAspect {
         context.setVariable("exception", e);
         context.setVariable("content", operationInfo.getOpContent());
         operationInfo.setSuccess(false);
-        operationInfo.setDesc(parseDesc(operation, context));
+        operationInfo.setDesc(parseDesc(joinPoint, operation, context));
         context.setVariable("opInfo", operationInfo);
         if (specifyHandle) {
-            handleOperation(operation, context);
+            handleOperation(joinPoint, operation, context);
         } else {
             defaultHandle(joinPoint, operation, operationInfo, argMap, null, e);
         }
     }
 
-    private void handleOperation(Operation operation, EvaluationContext context){
+    private void handleOperation(JoinPoint joinPoint, Operation operation, EvaluationContext context){
+        Expression expression;
+        try{
+            Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+            expression = exprEvaluator.getExpression(method, operation.expr());
+        }catch (Exception ex){
+            log.error("", ex);
+            return;
+        }
         if(operation.isAsync() && taskExecutor != null){
-            taskExecutor.execute(() -> exprParser.parseExpression(operation.expr()).getValue(context));
+            taskExecutor.execute(() -> expression.getValue(context));
         }else{
             if(operation.isAsync()){
                 log.warn("No TaskExecutor found, recording operation log synchronously");
             }
             try{
-                exprParser.parseExpression(operation.expr()).getValue(context);
+                expression.getValue(context);
             }catch (Exception ex){
                 log.error("", ex);
             }
@@ -168,10 +176,10 @@ public class OperationAspect {
         MethodSignature signature = (MethodSignature) joinPoint.getSignature();
         Object[] args = joinPoint.getArgs();
         // 方法参数名
-        String[] paramNames = signature.getParameterNames();
+        String[] paramNames = exprEvaluator.getParameterNames(signature.getMethod());
         // 设置EvaluationContext
-        if(paramNames != null) {
-            for (int i = 0; i < args.length; i++) {
+        if(paramNames.length > 0) {
+            for (int i = 0; i < Math.min(args.length, paramNames.length); i++) {
                 context.setVariable(paramNames[i], args[i]);
                 if (args[i] != null) {
                     // 去掉一些不能序列化的参数，避免后面一些对argMap的操作失败
@@ -194,7 +202,7 @@ public class OperationAspect {
         opInfo.setOpType(operation.type());
         opInfo.setOpAction(operation.action());
         opInfo.setOpFlag(operation.flag());
-        opInfo.setOpCost(System.currentTimeMillis() - Access.accessTime().getTime());
+        opInfo.setOpCost(System.currentTimeMillis() - Access.accessTimeMillis());
 
         // handleExpr
         String expr = operation.expr();
@@ -218,14 +226,15 @@ public class OperationAspect {
         return true;
     }
 
-    private String parseDesc(Operation operation, EvaluationContext context){
+    private String parseDesc(JoinPoint joinPoint, Operation operation, EvaluationContext context){
         String descSpel = operation.desc();
         if(StringUtils.isBlank(descSpel)){
             return "";
         }
 
         try{
-            return exprParser.parseExpression(descSpel, new TemplateParserContext()).getValue(context, String.class);
+            Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+            return exprEvaluator.getTemplate(method, descSpel).getValue(context, String.class);
         }catch(Exception e){
             log.error("", e);
             return "";
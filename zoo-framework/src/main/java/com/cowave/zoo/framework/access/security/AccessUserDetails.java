@@ -16,7 +16,11 @@ import cn.hutool.core.util.IdUtil;
 import com.cowave.zoo.framework.access.Access;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -210,6 +214,33 @@ public class AccessUserDetails implements UserDetails {
      */
     private List<String> apps;
 
+    /**
+     * 编译后的操作权限，setPermissions时重置
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient volatile PermitMatcher permitMatcher;
+
+    /**
+     * 是否管理员，setRoles时重置
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient volatile Boolean admin;
+
+    /**
+     * 由roles构造的权限，setRoles时重置
+     */
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient volatile List<SimpleGrantedAuthority> roleAuthorities;
+
     public AccessUserDetails(){
 
     }
@@ -244,20 +275,80 @@ public class AccessUserDetails implements UserDetails {
         return true;
     }
 
+    /**
+     * 由roles构造的权限只构造一次，每次返回可修改的副本
+     */
     @JsonIgnore
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         if(authorities != null){
             return authorities;
         }
-        if(CollectionUtils.isNotEmpty(roles)){
-            List<SimpleGrantedAuthority> list = new ArrayList<>(roles.size());
-            for(String role : roles){
-                list.add(new SimpleGrantedAuthority(role));
+        return new ArrayList<>(getRoleAuthorities());
+    }
+
+    private List<SimpleGrantedAuthority> getRoleAuthorities() {
+        List<SimpleGrantedAuthority> list = roleAuthorities;
+        if(list == null){
+            list = new ArrayList<>();
+            if(CollectionUtils.isNotEmpty(roles)){
+                for(String role : roles){
+                    list.add(new SimpleGrantedAuthority(role));
+                }
             }
-            return list;
+            list = Collections.unmodifiableList(list);
+            roleAuthorities = list;
+        }
+        return list;
+    }
+
+    public void setRoles(List<String> roles) {
+        this.roles = roles;
+        this.admin = null;
+        this.roleAuthorities = null;
+    }
+
+    public void setPermissions(List<String> permissions) {
+        this.permissions = permissions;
+        this.permitMatcher = null;
+    }
+
+    /**
+     * 是否管理员（直接修改roles中的元素不会重置）
+     */
+    @JsonIgnore
+    public boolean isAdmin() {
+        Boolean value = admin;
+        if(value == null){
+            value = CollectionUtils.isNotEmpty(roles) && roles.contains(Permission.ROLE_ADMIN);
+            admin = value;
+        }
+        return value;
+    }
+
+    /**
+     * 是否拥有指定的操作权限（直接修改permissions中的元素不会重置）
+     */
+    public boolean matchPermit(String permission) {
+        return getPermitMatcher().matches(permission);
+    }
+
+    PermitMatcher getPermitMatcher() {
+        PermitMatcher matcher = permitMatcher;
+        if(matcher == null){
+            matcher = PermitMatcher.compile(permissions);
+            permitMatcher = matcher;
         }
-        return new ArrayList<>();
+        return matcher;
+    }
+
+    /**
+     * 预先计算权限匹配、管理员和角色权限，副本共享计算结果（放入VerifiedTokenCache之前调用）
+     */
+    void precompute() {
+        getPermitMatcher();
+        isAdmin();
+        getRoleAuthorities();
     }
 
     public static AccessUserDetails newUserDetails(){
@@ -271,6 +362,49 @@ public class AccessUserDetails implements UserDetails {
         return accessUserDetails;
     }
 
+    /**
+     * 浅拷贝（集合类属性共享）
+     */
+    AccessUserDetails(AccessUserDetails other){
+        this.accessId = other.accessId;
+        this.accessToken = other.accessToken;
+        this.refreshId = other.refreshId;
+        this.refreshToken = other.refreshToken;
+        this.mfaRequired = other.mfaRequired;
+        this.authType = other.authType;
+        this.loginIp = other.loginIp;
+        this.loginTime = other.loginTime;
+        this.accessIp = other.accessIp;
+        this.accessTime = other.accessTime;
+        this.tenantId = other.tenantId;
+        this.tenantIndex = other.tenantIndex;
+        this.userId = other.userId;
+        this.userCode = other.userCode;
+        this.userProperties = other.userProperties;
+        this.userType = other.userType;
+        this.username = other.username;
+        this.userNick = other.userNick;
+        this.userPasswd = other.userPasswd;
+        this.roles = other.roles;
+        this.permissions = other.permissions;
+        this.permitScopes = other.permitScopes;
+        this.deptId = other.deptId;
+        this.deptCode = other.deptCode;
+        this.deptName = other.deptName;
+        this.clusterId = other.clusterId;
+        this.clusterLevel = other.clusterLevel;
+        this.clusterName = other.clusterName;
+        this.authorities = other.authorities;
+        this.accessUnique = other.accessUnique;
+        this.accessValid = other.accessValid;
+        this.oauthId = other.oauthId;
+        this.oauthName = other.oauthName;
+        this.apps = other.apps;
+        this.permitMatcher = other.permitMatcher;
+        this.admin = other.admin;
+        this.roleAuthorities = other.roleAuthorities;
+    }
+
     AccessUserDetails(RefreshTokenInfo refreshTokenInfo){
         this.accessId = refreshTokenInfo.getAccessId();
         this.refreshId = refreshTokenInfo.getRefreshId();
@@ -14,6 +14,8 @@ package com.cowave.zoo.framework.access.security;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtBuilder;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 
 import java.security.Key;
@@ -118,6 +120,11 @@ public interface BearerTokenDelegate {
      */
     String CLAIM_USER_SCOPE = "us";
 
+    /**
+     * 紧凑编码的用户角色、操作权限、数据权限、用户属性
+     */
+    String CLAIM_USER_COMPACT = "uz";
+
     /**
      * 部门id
      */
@@ -183,6 +190,20 @@ public interface BearerTokenDelegate {
      */
     Key getAccessVerificationKey(SignatureAlgorithm algorithm);
 
+    /**
+     * AccessToken KeyId（JWT头kid），null表示不设置
+     */
+    default String getAccessKeyId() {
+        return null;
+    }
+
+    /**
+     * AccessToken Parser
+     */
+    default JwtParser getAccessParser() {
+        return Jwts.parser().setSigningKey(getAccessVerificationKey(getAccessAlgorithm()));
+    }
+
     /**
      * AccessToken Issuer
      */
@@ -223,6 +244,20 @@ public interface BearerTokenDelegate {
      */
     Key getRefreshVerificationKey(SignatureAlgorithm algorithm);
 
+    /**
+     * RefreshToken KeyId（JWT头kid），null表示不设置
+     */
+    default String getRefreshKeyId() {
+        return null;
+    }
+
+    /**
+     * RefreshToken Parser
+     */
+    default JwtParser getRefreshParser() {
+        return Jwts.parser().setSigningKey(getRefreshVerificationKey(getRefreshAlgorithm()));
+    }
+
     /**
      * RefreshToken Issuer
      */
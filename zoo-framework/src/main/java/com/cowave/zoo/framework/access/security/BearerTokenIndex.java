@@ -0,0 +1,322 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.security;
+
+import com.cowave.zoo.framework.helper.redis.RedisHelper;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌索引
+ * <p/> 令牌key之外维护按用户、按租户的索引（zset，member为令牌key，score为过期时间），
+ * 注销和列表只需要访问对应索引中的令牌，不用SCAN整个keyspace；过期的member在写入和列表时顺便清理
+ * <p/> 单节点/哨兵下通过Lua脚本同时更新令牌和索引；集群下令牌和索引不在同一个slot，退化为逐条执行
+ *
+ * @author shanhuiming
+ */
+@SuppressWarnings(value = {"unchecked", "rawtypes"})
+public class BearerTokenIndex {
+
+    // KEYS: 令牌key，索引key...   ARGV: 令牌值，当前毫秒，有效毫秒，是否先删除KEYS[2]中的所有令牌
+    public static final String LUA_PUT = """
+            local key = KEYS[1]
+            local now = tonumber(ARGV[2])
+            local ttl = tonumber(ARGV[3])
+            if ARGV[4] == "1" then
+               local members = redis.call("ZRANGE", KEYS[2], 0, -1)
+               for _, member in ipairs(members) do
+                  redis.call("DEL", member)
+                  for i = 3, #KEYS do
+                     redis.call("ZREM", KEYS[i], member)
+                  end
+               end
+               redis.call("DEL", KEYS[2])
+            end
+            redis.call("SET", key, ARGV[1], "PX", ttl)
+            for i = 2, #KEYS do
+               redis.call("ZREMRANGEBYSCORE", KEYS[i], "-inf", now)
+               redis.call("ZADD", KEYS[i], now + ttl, key)
+               if redis.call("PTTL", KEYS[i]) < ttl then
+                  redis.call("PEXPIRE", KEYS[i], ttl)
+               end
+            end
+            return 1
+            """;
+
+    // KEYS: 令牌key，索引key...
+    public static final String LUA_REMOVE = """
+            local count = redis.call("DEL", KEYS[1])
+            for i = 2, #KEYS do
+               redis.call("ZREM", KEYS[i], KEYS[1])
+            end
+            return count
+            """;
+
+    // KEYS: 用户索引key，其它索引key...
+    public static final String LUA_REMOVE_ALL = """
+            local members = redis.call("ZRANGE", KEYS[1], 0, -1)
+            for _, member in ipairs(members) do
+               redis.call("DEL", member)
+               for i = 2, #KEYS do
+                  redis.call("ZREM", KEYS[i], member)
+               end
+            end
+            redis.call("DEL", KEYS[1])
+            return #members
+            """;
+
+    private static final RedisScript<Long> PUT_SCRIPT = RedisScript.of(LUA_PUT, Long.class);
+
+    private static final RedisScript<Long> REMOVE_SCRIPT = RedisScript.of(LUA_REMOVE, Long.class);
+
+    private static final RedisScript<Long> REMOVE_ALL_SCRIPT = RedisScript.of(LUA_REMOVE_ALL, Long.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private final RedisHelper redisHelper;
+
+    private final RedisSerializer<Object> valueSerializer;
+
+    private final TokenSizeMetrics tokenSizeMetrics;
+
+    private volatile Boolean clustered;
+
+    public BearerTokenIndex(RedisHelper redisHelper) {
+        this(redisHelper, null, null);
+    }
+
+    /**
+     * @param valueSerializer  令牌信息的序列化，null表示使用redisHelper的序列化
+     * @param tokenSizeMetrics 令牌信息大小统计，可以为null
+     */
+    public BearerTokenIndex(RedisHelper redisHelper, RedisSerializer<Object> valueSerializer, TokenSizeMetrics tokenSizeMetrics) {
+        this.redisHelper = redisHelper;
+        this.valueSerializer = valueSerializer != null ? valueSerializer : redisHelper.getValueSerializer();
+        this.tokenSizeMetrics = tokenSizeMetrics;
+    }
+
+    /**
+     * 获取令牌
+     */
+    public <T> T get(String key) {
+        byte[] value = execute(connection -> connection.stringCommands().get(bytes(key)));
+        return (T) valueSerializer.deserialize(value);
+    }
+
+    /**
+     * 更新令牌（保持原来的过期时间），令牌不存在或者没有过期时间时不更新
+     */
+    public <T> void replace(String key, T value) {
+        byte[] valueBytes = valueSerializer.serialize(value);
+        execute(connection -> {
+            byte[] rawKey = bytes(key);
+            Long ttl = connection.keyCommands().pTtl(rawKey);
+            if (ttl != null && ttl > 0) {
+                connection.stringCommands().set(rawKey, valueBytes,
+                        Expiration.milliseconds(ttl), RedisStringCommands.SetOption.ifPresent());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 保存令牌并加入索引
+     *
+     * @param replace   是否先删除indexKeys[0]中的所有令牌（比如不允许同时登录）
+     * @param indexKeys 令牌所属的索引
+     */
+    public <T> void put(String key, T value, long timeout, TimeUnit timeUnit, boolean replace, String... indexKeys) {
+        long ttl = Math.max(1, timeUnit.toMillis(timeout));
+        long now = System.currentTimeMillis();
+        byte[] valueBytes = valueSerializer.serialize(value);
+        if (tokenSizeMetrics != null && valueBytes != null) {
+            tokenSizeMetrics.record(TokenSizeMetrics.INFO, valueBytes.length);
+        }
+        if (isClustered()) {
+            execute(connection -> {
+                if (replace) {
+                    doRemoveAll(connection, indexKeys);
+                }
+                byte[] rawKey = bytes(key);
+                connection.stringCommands().set(rawKey, valueBytes,
+                        Expiration.milliseconds(ttl), RedisStringCommands.SetOption.upsert());
+                for (String indexKey : indexKeys) {
+                    addIndex(connection, bytes(indexKey), rawKey, now, ttl);
+                }
+                return null;
+            });
+            return;
+        }
+        luaExec(PUT_SCRIPT, keys(key, indexKeys),
+                valueBytes, bytes(String.valueOf(now)), bytes(String.valueOf(ttl)), bytes(replace ? "1" : "0"));
+    }
+
+    /**
+     * 删除令牌并移出索引
+     */
+    public void remove(String key, String... indexKeys) {
+        if (isClustered()) {
+            execute(connection -> {
+                byte[] rawKey = bytes(key);
+                connection.keyCommands().del(rawKey);
+                for (String indexKey : indexKeys) {
+                    connection.zSetCommands().zRem(bytes(indexKey), rawKey);
+                }
+                return null;
+            });
+            return;
+        }
+        luaExec(REMOVE_SCRIPT, keys(key, indexKeys));
+    }
+
+    /**
+     * 删除索引中的所有令牌
+     *
+     * @param userIndexKey 用户索引，删除后一起删掉
+     * @param indexKeys    令牌同时所属的其它索引
+     */
+    public void removeAll(String userIndexKey, String... indexKeys) {
+        if (isClustered()) {
+            execute(connection -> {
+                doRemoveAll(connection, keys(userIndexKey, indexKeys).toArray(new String[0]));
+                return null;
+            });
+            return;
+        }
+        luaExec(REMOVE_ALL_SCRIPT, keys(userIndexKey, indexKeys));
+    }
+
+    /**
+     * 获取索引中的令牌，同时清理已过期或者已删除的member
+     */
+    public <T> List<T> list(String indexKey) {
+        return execute(connection -> {
+            byte[] rawIndex = bytes(indexKey);
+            RedisZSetCommands zSetCommands = connection.zSetCommands();
+            zSetCommands.zRemRangeByScore(rawIndex, 0, System.currentTimeMillis());
+            Set<byte[]> members = zSetCommands.zRange(rawIndex, 0, -1);
+            if (members == null || members.isEmpty()) {
+                return new ArrayList<>();
+            }
+
+            List<T> list = new ArrayList<>(members.size());
+            List<byte[]> missing = new ArrayList<>();
+            List<byte[]> memberList = new ArrayList<>(members);
+            for (int from = 0; from < memberList.size(); from += BATCH_SIZE) {
+                List<byte[]> batch = memberList.subList(from, Math.min(from + BATCH_SIZE, memberList.size()));
+                List<byte[]> values = connection.stringCommands().mGet(batch.toArray(new byte[0][]));
+                for (int i = 0; i < batch.size(); i++) {
+                    byte[] value = values == null ? null : values.get(i);
+                    if (value == null) {
+                        missing.add(batch.get(i));
+                    } else {
+                        list.add((T) valueSerializer.deserialize(value));
+                    }
+                }
+            }
+            if (!missing.isEmpty()) {
+                zSetCommands.zRem(rawIndex, missing.toArray(new byte[0][]));
+            }
+            return list;
+        });
+    }
+
+    /**
+     * 将已存在的令牌加入索引（令牌保持原来的过期时间）
+     *
+     * @return 令牌是否存在
+     */
+    public boolean index(String key, String... indexKeys) {
+        long now = System.currentTimeMillis();
+        Boolean indexed = execute(connection -> {
+            byte[] rawKey = bytes(key);
+            Long ttl = connection.keyCommands().pTtl(rawKey);
+            if (ttl == null || ttl == -2) {
+                return false;
+            }
+            // 没有设置过期的令牌，索引中只保留一天，之后每次列表都会清理掉
+            long indexTtl = ttl > 0 ? ttl : TimeUnit.DAYS.toMillis(1);
+            for (String indexKey : indexKeys) {
+                addIndex(connection, bytes(indexKey), rawKey, now, indexTtl);
+            }
+            return true;
+        });
+        return Boolean.TRUE.equals(indexed);
+    }
+
+    private void doRemoveAll(RedisConnection connection, String[] indexKeys) {
+        byte[] rawUserIndex = bytes(indexKeys[0]);
+        Set<byte[]> members = connection.zSetCommands().zRange(rawUserIndex, 0, -1);
+        if (members != null && !members.isEmpty()) {
+            byte[][] rawMembers = members.toArray(new byte[0][]);
+            for (byte[] member : rawMembers) {
+                connection.keyCommands().del(member);
+            }
+            for (int i = 1; i < indexKeys.length; i++) {
+                connection.zSetCommands().zRem(bytes(indexKeys[i]), rawMembers);
+            }
+        }
+        connection.keyCommands().del(rawUserIndex);
+    }
+
+    private void addIndex(RedisConnection connection, byte[] rawIndex, byte[] rawKey, long now, long ttl) {
+        RedisZSetCommands zSetCommands = connection.zSetCommands();
+        zSetCommands.zRemRangeByScore(rawIndex, 0, now);
+        zSetCommands.zAdd(rawIndex, now + ttl, rawKey);
+        Long indexTtl = connection.keyCommands().pTtl(rawIndex);
+        if (indexTtl == null || indexTtl < ttl) {
+            connection.keyCommands().pExpire(rawIndex, ttl);
+        }
+    }
+
+    private boolean isClustered() {
+        Boolean value = clustered;
+        if (value == null) {
+            value = execute(connection -> connection instanceof RedisClusterConnection);
+            clustered = value;
+        }
+        return Boolean.TRUE.equals(value);
+    }
+
+    private <T> T execute(RedisCallback<T> callback) {
+        RedisTemplate redisTemplate = redisHelper.getRedisTemplate();
+        return (T) redisTemplate.execute(callback);
+    }
+
+    private void luaExec(RedisScript<Long> script, List<String> keys, byte[]... args) {
+        RedisTemplate redisTemplate = redisHelper.getRedisTemplate();
+        redisTemplate.execute(script, RedisSerializer.byteArray(), redisTemplate.getValueSerializer(), keys, (Object[]) args);
+    }
+
+    private static List<String> keys(String first, String[] others) {
+        List<String> keys = new ArrayList<>(others.length + 1);
+        keys.add(first);
+        keys.addAll(Arrays.asList(others));
+        return keys;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -22,8 +22,8 @@ import com.cowave.zoo.framework.access.filter.AccessIdGenerator;
 import com.cowave.zoo.framework.helper.redis.RedisHelper;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.jsonwebtoken.*;
-import lombok.RequiredArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.http.MediaType;
 
 import javax.servlet.http.HttpServletResponse;
@@ -40,7 +40,6 @@ import static com.cowave.zoo.framework.access.security.AuthMode.ACCESS_REFRESH;
 /**
  * @author shanhuiming
  */
-@RequiredArgsConstructor
 public class BearerTokenServiceImpl implements BearerTokenService {
     // {applicationName}:auth:{tenantId}:access:{type}:{userAccount}:{accessId}
     public static final String AUTH_ACCESS_KEY = "%s:auth:%s:access:%s:%s:%s";
@@ -48,10 +47,56 @@ public class BearerTokenServiceImpl implements BearerTokenService {
     public static final String AUTH_REFRESH_KEY = "%s:auth:%s:refresh:%s:%s";
     // {applicationName}:auth:{tenantId}:oauth:{type}:{userAccount}:{appId}
     public static final String AUTH_OAUTH_KEY = "%s:auth:%s:oauth:%s:%s:%s";
+    // {applicationName}:auth:{tenantId}:index:access
+    public static final String AUTH_ACCESS_INDEX = "%s:auth:%s:index:access";
+    // {applicationName}:auth:{tenantId}:index:access:{type}:{userAccount}
+    public static final String AUTH_ACCESS_USER_INDEX = "%s:auth:%s:index:access:%s:%s";
+    // {applicationName}:auth:{tenantId}:index:refresh
+    public static final String AUTH_REFRESH_INDEX = "%s:auth:%s:index:refresh";
+    // {applicationName}:auth:{tenantId}:index:oauth
+    public static final String AUTH_OAUTH_INDEX = "%s:auth:%s:index:oauth";
+    // {applicationName}:auth:{tenantId}:index:oauth:{type}:{userAccount}
+    public static final String AUTH_OAUTH_USER_INDEX = "%s:auth:%s:index:oauth:%s:%s";
+    // {applicationName}:auth:index:migrated
+    public static final String AUTH_INDEX_MIGRATED = "%s:auth:index:migrated";
+    // {applicationName}:auth:revoke
+    public static final String AUTH_REVOKE_CHANNEL = "%s:auth:revoke";
     private final RedisHelper redisHelper;
     private final ObjectMapper objectMapper;
     private final AccessIdGenerator accessIdGenerator;
     private final BearerTokenDelegate bearerTokenDelegate;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final BearerTokenIndex tokenIndex;
+    private final TokenSizeMetrics tokenSizeMetrics;
+
+    public BearerTokenServiceImpl(RedisHelper redisHelper, ObjectMapper objectMapper,
+                                  AccessIdGenerator accessIdGenerator, BearerTokenDelegate bearerTokenDelegate) {
+        this(redisHelper, objectMapper, accessIdGenerator, bearerTokenDelegate, null);
+    }
+
+    /**
+     * @param verifiedTokenCache 验证通过的accessToken本地缓存，null表示不缓存
+     */
+    public BearerTokenServiceImpl(RedisHelper redisHelper, ObjectMapper objectMapper, AccessIdGenerator accessIdGenerator,
+                                  BearerTokenDelegate bearerTokenDelegate, VerifiedTokenCache verifiedTokenCache) {
+        this(redisHelper, objectMapper, accessIdGenerator, bearerTokenDelegate, verifiedTokenCache, null, null);
+    }
+
+    /**
+     * @param tokenInfoSerializer Redis中令牌信息的序列化，null表示使用redisHelper的序列化
+     * @param tokenSizeMetrics    令牌大小统计，可以为null
+     */
+    public BearerTokenServiceImpl(RedisHelper redisHelper, ObjectMapper objectMapper, AccessIdGenerator accessIdGenerator,
+                                  BearerTokenDelegate bearerTokenDelegate, VerifiedTokenCache verifiedTokenCache,
+                                  RedisSerializer<Object> tokenInfoSerializer, TokenSizeMetrics tokenSizeMetrics) {
+        this.redisHelper = redisHelper;
+        this.objectMapper = objectMapper;
+        this.accessIdGenerator = accessIdGenerator;
+        this.bearerTokenDelegate = bearerTokenDelegate;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.tokenSizeMetrics = tokenSizeMetrics;
+        this.tokenIndex = redisHelper == null ? null : new BearerTokenIndex(redisHelper, tokenInfoSerializer, tokenSizeMetrics);
+    }
 
     @Override
     public void assignAccessToken(AccessUserDetails userDetails) {
@@ -66,12 +111,14 @@ public class BearerTokenServiceImpl implements BearerTokenService {
         int accessExpire = bearerTokenDelegate.getAccessExpireSeconds();
         SignatureAlgorithm algorithm = bearerTokenDelegate.getAccessAlgorithm();
         Key signingKey = bearerTokenDelegate.getAccessSigningKey(algorithm);
+        setKeyId(jwtBuilder, bearerTokenDelegate.getAccessKeyId());
         String accessToken = jwtBuilder
                 .setIssuer(issuer)
                 .setIssuedAt(new Date())
                 .signWith(algorithm, signingKey)
                 .setExpiration(new Date(System.currentTimeMillis() + accessExpire * 1000L))
                 .compact();
+        recordSize(TokenSizeMetrics.ACCESS, accessToken);
         // 填充userDetails
         userDetails.setAccessToken(accessToken);
         // 保存到上下文中
@@ -87,22 +134,27 @@ public class BearerTokenServiceImpl implements BearerTokenService {
         }
         // 服务端保存
         if (userDetails.isAccessValid() && redisHelper != null) {
+            String tenantId = userDetails.getTenantId();
+            String authType = userDetails.getAuthType();
+            String userAccount = userDetails.getUsername();
             // 仅使用accessToken且不允许同时登录，那么删掉其它令牌
-            if(userDetails.isAccessUnique() && !useRefreshToken){
-                String tenantId = userDetails.getTenantId();
-                String authType = userDetails.getAuthType();
-                String userAccount = userDetails.getUsername();
-                redisHelper.deleteByPattern(bearerTokenDelegate.getAccessIssuer()
-                        + ":auth:" + tenantId + ":access:" + authType + ":" + userAccount + ":*");
-            }
+            boolean unique = userDetails.isAccessUnique() && !useRefreshToken;
             // 记录本次发放的令牌
             AccessTokenInfo accessTokenInfo = new AccessTokenInfo(userDetails);
-            redisHelper.putExpire(getAccessTokenKey(userDetails), accessTokenInfo, accessExpire, TimeUnit.SECONDS);
+            tokenIndex.put(getAccessTokenKey(userDetails), accessTokenInfo, accessExpire, TimeUnit.SECONDS, unique,
+                    getAccessUserIndex(tenantId, authType, userAccount), getAccessIndex(tenantId));
+            if (unique) {
+                revokeVerifiedCache(tenantId, authType, userAccount, null);
+            }
         }
     }
 
     @Override
     public void assignAccessRefreshToken(AccessUserDetails userDetails) {
+        // 不允许同时登录，refreshId变化后之前的accessToken都不能再使用
+        if (userDetails.isAccessValid() && userDetails.isAccessUnique()) {
+            revokeVerifiedCache(userDetails.getTenantId(), userDetails.getAuthType(), userDetails.getUsername(), null);
+        }
         doAssignAccessToken(userDetails, true);
         assignRefreshToken(userDetails);
     }
@@ -114,17 +166,20 @@ public class BearerTokenServiceImpl implements BearerTokenService {
         String issuer = bearerTokenDelegate.getRefreshIssuer();
         SignatureAlgorithm algorithm = bearerTokenDelegate.getRefreshAlgorithm();
         Key signingKey = bearerTokenDelegate.getRefreshSigningKey(algorithm);
+        setKeyId(jwtBuilder, bearerTokenDelegate.getRefreshKeyId());
         String refreshToken = jwtBuilder
                 .setIssuer(issuer)
                 .setIssuedAt(new Date())
                 .signWith(algorithm, signingKey)
                 .compact();
+        recordSize(TokenSizeMetrics.REFRESH, refreshToken);
         userDetails.setRefreshToken(refreshToken);
         // 服务端保存
         if (redisHelper != null) {
             int refreshExpire = bearerTokenDelegate.getRefreshExpireSeconds();
             RefreshTokenInfo refreshTokenInfo = new RefreshTokenInfo(userDetails);
-            redisHelper.putExpire(getRefreshTokenKey(userDetails), refreshTokenInfo, refreshExpire, TimeUnit.SECONDS);
+            tokenIndex.put(getRefreshTokenKey(userDetails), refreshTokenInfo, refreshExpire, TimeUnit.SECONDS, false,
+                    getRefreshIndex(userDetails.getTenantId()));
         }
     }
 
@@ -137,12 +192,14 @@ public class BearerTokenServiceImpl implements BearerTokenService {
         int accessExpire = bearerTokenDelegate.getAccessExpireSeconds();
         SignatureAlgorithm accessAlgorithm = bearerTokenDelegate.getAccessAlgorithm();
         Key accessSigningKey = bearerTokenDelegate.getAccessSigningKey(accessAlgorithm);
+        setKeyId(oauthAccessBuilder, bearerTokenDelegate.getAccessKeyId());
         String oauthAccess = oauthAccessBuilder
                 .setIssuer(accessIssuer)
                 .setIssuedAt(new Date())
                 .signWith(accessAlgorithm, accessSigningKey)
                 .setExpiration(new Date(System.currentTimeMillis() + accessExpire * 1000L))
                 .compact();
+        recordSize(TokenSizeMetrics.ACCESS, oauthAccess);
         userDetails.setAccessToken(oauthAccess);
         // 构造refreshToken
         JwtBuilder oauthRefreshBuilder = Jwts.builder();
@@ -150,19 +207,24 @@ public class BearerTokenServiceImpl implements BearerTokenService {
         String refreshIssuer = bearerTokenDelegate.getRefreshIssuer();
         SignatureAlgorithm refreshAlgorithm = bearerTokenDelegate.getRefreshAlgorithm();
         Key refreshSigningKey = bearerTokenDelegate.getRefreshSigningKey(refreshAlgorithm);
+        setKeyId(oauthRefreshBuilder, bearerTokenDelegate.getRefreshKeyId());
         String oauthRefreshToken = oauthRefreshBuilder
                 .setIssuer(refreshIssuer)
                 .setIssuedAt(new Date())
                 .signWith(refreshAlgorithm, refreshSigningKey)
                 .compact();
+        recordSize(TokenSizeMetrics.REFRESH, oauthRefreshToken);
         userDetails.setRefreshToken(oauthRefreshToken);
         // 服务端保存
         if (redisHelper != null) {
             int refreshExpire = bearerTokenDelegate.getRefreshExpireSeconds();
             RefreshTokenInfo refreshTokenInfo = new RefreshTokenInfo(userDetails);
-            String oauthKey = getOauthTokenKey(userDetails.getTenantId(),
-                    userDetails.getAuthType(), userDetails.getUsername(), userDetails.getOauthId());
-            redisHelper.putExpire(oauthKey, refreshTokenInfo, refreshExpire, TimeUnit.SECONDS);
+            String tenantId = userDetails.getTenantId();
+            String authType = userDetails.getAuthType();
+            String userAccount = userDetails.getUsername();
+            String oauthKey = getOauthTokenKey(tenantId, authType, userAccount, userDetails.getOauthId());
+            tokenIndex.put(oauthKey, refreshTokenInfo, refreshExpire, TimeUnit.SECONDS, false,
+                    getOauthUserIndex(tenantId, authType, userAccount), getOauthIndex(tenantId));
         }
     }
 
@@ -170,7 +232,8 @@ public class BearerTokenServiceImpl implements BearerTokenService {
     public String refreshAccessToken() throws Exception {
         AccessUserDetails userDetails = parseAccessToken(null);
         if (userDetails.isAccessValid() && redisHelper != null) {
-            redisHelper.delete(getAccessTokenKey(userDetails));
+            removeAccessToken(userDetails.getTenantId(), userDetails.getAuthType(), userDetails.getUsername(), userDetails.getAccessId());
+            revokeVerifiedCache(userDetails.getTenantId(), userDetails.getAuthType(), userDetails.getUsername(), userDetails.getAccessId());
         }
         userDetails.setAccessId(IdUtil.fastSimpleUUID());
         userDetails.setAccessIp(Access.accessIp());
@@ -185,9 +248,7 @@ public class BearerTokenServiceImpl implements BearerTokenService {
         assert redisHelper != null;
         Claims claims;
         try {
-            SignatureAlgorithm algorithm = bearerTokenDelegate.getRefreshAlgorithm();
-            Key verificationKey = bearerTokenDelegate.getRefreshVerificationKey(algorithm);
-            claims = Jwts.parser().setSigningKey(verificationKey).parseClaimsJws(refreshToken).getBody();
+            claims = bearerTokenDelegate.getRefreshParser().parseClaimsJws(refreshToken).getBody();
         } catch (Exception e) {
             throw new HttpHintException(UNAUTHORIZED, "{frame.auth.refresh.invalid}");
         }
@@ -195,7 +256,7 @@ public class BearerTokenServiceImpl implements BearerTokenService {
         AccessUserDetails details = bearerTokenDelegate.parseRefreshClaims(claims);
         // 获取服务保存的Token
         String refreshTokenKey = getRefreshTokenKey(details.getTenantId(), details.getAuthType(), details.getUsername());
-        RefreshTokenInfo refreshTokenInfo = redisHelper.getValue(refreshTokenKey);
+        RefreshTokenInfo refreshTokenInfo = tokenIndex.get(refreshTokenKey);
         if (refreshTokenInfo == null) {
             throw new HttpHintException(UNAUTHORIZED, "{frame.auth.refresh.empty}");
         }
@@ -208,8 +269,8 @@ public class BearerTokenServiceImpl implements BearerTokenService {
         //当前accessToken删除
         String accessId = refreshTokenInfo.getAccessId();
         if (details.isAccessValid()) {
-            String accessTokenKey = getAccessTokenKey(details.getTenantId(), details.getAuthType(), details.getUsername(), accessId);
-            redisHelper.delete(accessTokenKey);
+            removeAccessToken(details.getTenantId(), details.getAuthType(), details.getUsername(), accessId);
+            revokeVerifiedCache(details.getTenantId(), details.getAuthType(), details.getUsername(), accessId);
         }
 
         // 更新Token信息
@@ -228,9 +289,7 @@ public class BearerTokenServiceImpl implements BearerTokenService {
         assert redisHelper != null;
         Claims claims;
         try {
-            SignatureAlgorithm algorithm = bearerTokenDelegate.getRefreshAlgorithm();
-            Key verificationKey = bearerTokenDelegate.getRefreshVerificationKey(algorithm);
-            claims = Jwts.parser().setSigningKey(verificationKey).parseClaimsJws(oauthToken).getBody();
+            claims = bearerTokenDelegate.getRefreshParser().parseClaimsJws(oauthToken).getBody();
         } catch (Exception e) {
             throw new HttpHintException(UNAUTHORIZED, "{frame.auth.refresh.invalid}");
         }
@@ -239,7 +298,7 @@ public class BearerTokenServiceImpl implements BearerTokenService {
         // 获取服务保存的Token
         String oauthTokenKey = getOauthTokenKey(
                 details.getTenantId(), details.getAuthType(), details.getUsername(), details.getOauthId());
-        RefreshTokenInfo oauthTokenInfo = redisHelper.getValue(oauthTokenKey);
+        RefreshTokenInfo oauthTokenInfo = tokenIndex.get(oauthTokenKey);
         if (oauthTokenInfo == null) {
             throw new HttpHintException(UNAUTHORIZED, "{frame.auth.refresh.empty}");
         }
@@ -291,11 +350,21 @@ public class BearerTokenServiceImpl implements BearerTokenService {
     }
 
     private AccessUserDetails doParseAccessToken(String accessToken, HttpServletResponse response) throws IOException {
+        long cacheStamp = 0;
+        if (verifiedTokenCache != null) {
+            cacheStamp = verifiedTokenCache.stamp();
+            AccessUserDetails userDetails = verifiedTokenCache.get(accessToken);
+            if (userDetails != null) {
+                setAccessUserDetails(userDetails);
+                return userDetails;
+            }
+        }
         Claims claims;
+        AccessUserDetails userDetails;
         try {
-            SignatureAlgorithm algorithm = bearerTokenDelegate.getAccessAlgorithm();
-            Key verificationKey = bearerTokenDelegate.getAccessVerificationKey(algorithm);
-            claims = Jwts.parser().setSigningKey(verificationKey).parseClaimsJws(accessToken).getBody();
+            claims = bearerTokenDelegate.getAccessParser().parseClaimsJws(accessToken).getBody();
+            // claims格式错误（比如紧凑claims的权限字典已变化）也按无效令牌处理
+            userDetails = bearerTokenDelegate.parseAccessClaims(claims);
         } catch (ExpiredJwtException e) {
             if (response == null) {
                 throw new HttpHintException(UNAUTHORIZED, "{frame.auth.access.expire}");
@@ -309,33 +378,35 @@ public class BearerTokenServiceImpl implements BearerTokenService {
             writeResponse(response, UNAUTHORIZED, "frame.auth.access.invalid");
             return null;
         }
-        AccessUserDetails userDetails = bearerTokenDelegate.parseAccessClaims(claims);
         boolean validated = validateUserDetails(userDetails, response, false);
         if(validated) {
-            // 保存到上下文中
-            Access access = Access.get();
-            if (access == null) {
-                access = Access.newAccess(accessIdGenerator);
+            if (verifiedTokenCache != null) {
+                verifiedTokenCache.put(accessToken, userDetails, claims.getExpiration(), cacheStamp);
             }
-            access.setUserDetails(userDetails);
-            Access.set(access);
+            setAccessUserDetails(userDetails);
             return userDetails;
         }
         return null;
     }
 
+    private void setAccessUserDetails(AccessUserDetails userDetails) {
+        // 保存到上下文中
+        Access access = Access.get();
+        if (access == null) {
+            access = Access.newAccess(accessIdGenerator);
+        }
+        access.setUserDetails(userDetails);
+        Access.set(access);
+    }
+
     protected boolean validateUserDetails(AccessUserDetails userDetails, HttpServletResponse response, boolean useRefreshToken) throws IOException {
-        if (useRefreshToken) {
-            // IP变化，要求重新刷一下accessToken
-            if (userDetails.isAccessUnique() && !Objects.equals(Access.accessIp(), userDetails.getAccessIp())) {
-                writeResponse(response, INVALID_TOKEN, "frame.auth.access.changed.ip");
-                return false;
-            }
+        if (useRefreshToken && !validateAccessIp(userDetails, response)) {
+            return false;
         }
         // 服务端校验AccessToken
         if (userDetails.isAccessValid()) {
             if (useRefreshToken) {
-                RefreshTokenInfo refreshTokenInfo = redisHelper.getValue(getRefreshTokenKey(userDetails));
+                RefreshTokenInfo refreshTokenInfo = tokenIndex.get(getRefreshTokenKey(userDetails));
                 // 确认refreshTokenInfo存在
                 if (refreshTokenInfo == null) {
                     writeResponse(response, UNAUTHORIZED, "frame.auth.access.revoked");
@@ -349,13 +420,13 @@ public class BearerTokenServiceImpl implements BearerTokenService {
                 }
 
                 // 允许同时登录，检查是否手动标记注销
-                AccessTokenInfo accessTokenInfo = redisHelper.getValue(getAccessTokenKey(userDetails));
+                AccessTokenInfo accessTokenInfo = tokenIndex.get(getAccessTokenKey(userDetails));
                 if(accessTokenInfo == null || accessTokenInfo.getRevoked() == 1){
                     writeResponse(response, UNAUTHORIZED, "frame.auth.access.revoked");
                     return false;
                 }
             }else{
-                AccessTokenInfo accessTokenInfo = redisHelper.getValue(getAccessTokenKey(userDetails));
+                AccessTokenInfo accessTokenInfo = tokenIndex.get(getAccessTokenKey(userDetails));
                 // 确认accessTokenInfo存在
                 if (accessTokenInfo == null) {
                     writeResponse(response, UNAUTHORIZED, "frame.auth.access.revoked");
@@ -366,6 +437,15 @@ public class BearerTokenServiceImpl implements BearerTokenService {
         return true;
     }
 
+    private boolean validateAccessIp(AccessUserDetails userDetails, HttpServletResponse response) throws IOException {
+        // IP变化，要求重新刷一下accessToken
+        if (userDetails.isAccessUnique() && !Objects.equals(Access.accessIp(), userDetails.getAccessIp())) {
+            writeResponse(response, INVALID_TOKEN, "frame.auth.access.changed.ip");
+            return false;
+        }
+        return true;
+    }
+
     @Override
     public AccessUserDetails parseAccessRefreshToken(HttpServletResponse response) throws IOException {
         String accessToken = getAccessToken();
@@ -377,11 +457,24 @@ public class BearerTokenServiceImpl implements BearerTokenService {
     }
 
     private AccessUserDetails doParseAccessRefreshToken(String accessToken, HttpServletResponse response) throws IOException {
+        long cacheStamp = 0;
+        if (verifiedTokenCache != null) {
+            cacheStamp = verifiedTokenCache.stamp();
+            AccessUserDetails userDetails = verifiedTokenCache.get(accessToken);
+            if (userDetails != null) {
+                // IP每次都要检查
+                if (!validateAccessIp(userDetails, response)) {
+                    return null;
+                }
+                setAccessUserDetails(userDetails);
+                return userDetails;
+            }
+        }
         Claims claims;
+        AccessUserDetails userDetails;
         try {
-            SignatureAlgorithm algorithm = bearerTokenDelegate.getAccessAlgorithm();
-            Key verificationKey = bearerTokenDelegate.getAccessVerificationKey(algorithm);
-            claims = Jwts.parser().setSigningKey(verificationKey).parseClaimsJws(accessToken).getBody();
+            claims = bearerTokenDelegate.getAccessParser().parseClaimsJws(accessToken).getBody();
+            userDetails = bearerTokenDelegate.parseAccessClaims(claims);
         } catch (ExpiredJwtException e) {
             writeResponse(response, INVALID_TOKEN, "frame.auth.access.expire");
             return null;
@@ -389,16 +482,12 @@ public class BearerTokenServiceImpl implements BearerTokenService {
             writeResponse(response, UNAUTHORIZED, "frame.auth.access.invalid");
             return null;
         }
-        AccessUserDetails userDetails = bearerTokenDelegate.parseAccessClaims(claims);
         boolean validated = validateUserDetails(userDetails, response, true);
         if(validated) {
-            // 保存到上下文中
-            Access access = Access.get();
-            if (access == null) {
-                access = Access.newAccess(accessIdGenerator);
+            if (verifiedTokenCache != null) {
+                verifiedTokenCache.put(accessToken, userDetails, claims.getExpiration(), cacheStamp);
             }
-            access.setUserDetails(userDetails);
-            Access.set(access);
+            setAccessUserDetails(userDetails);
             return userDetails;
         }
         return null;
@@ -417,7 +506,8 @@ public class BearerTokenServiceImpl implements BearerTokenService {
         }
 
         if (ACCESS == bearerTokenDelegate.authMode()) {
-            redisHelper.delete(getAccessTokenKey(userDetails));
+            removeAccessToken(userDetails.getTenantId(), userDetails.getAuthType(), userDetails.getUsername(), userDetails.getAccessId());
+            revokeVerifiedCache(userDetails.getTenantId(), userDetails.getAuthType(), userDetails.getUsername(), userDetails.getAccessId());
         }
 
         if (ACCESS_REFRESH == bearerTokenDelegate.authMode()) {
@@ -426,15 +516,12 @@ public class BearerTokenServiceImpl implements BearerTokenService {
                 revokeRefreshToken(userDetails.getTenantId(), userDetails.getAuthType(), userDetails.getUsername());
             } else {
                 // 允许同时登录，只将自己标记为回收
-                String accessKey = getAccessTokenKey(userDetails);
-                Long expireSeconds = redisHelper.getExpire(accessKey);
-                if (expireSeconds > 0) {
-                    AccessTokenInfo accessTokenInfo = new AccessTokenInfo(userDetails);
-                    accessTokenInfo.setRevoked(1);
-                    accessTokenInfo.setAccessIp(Access.accessIp());
-                    accessTokenInfo.setAccessTime(Access.accessTime());
-                    redisHelper.putExpire(accessKey, accessTokenInfo, expireSeconds, TimeUnit.SECONDS);
-                }
+                AccessTokenInfo accessTokenInfo = new AccessTokenInfo(userDetails);
+                accessTokenInfo.setRevoked(1);
+                accessTokenInfo.setAccessIp(Access.accessIp());
+                accessTokenInfo.setAccessTime(Access.accessTime());
+                tokenIndex.replace(getAccessTokenKey(userDetails), accessTokenInfo);
+                revokeVerifiedCache(userDetails.getTenantId(), userDetails.getAuthType(), userDetails.getUsername(), userDetails.getAccessId());
             }
         }
     }
@@ -442,44 +529,116 @@ public class BearerTokenServiceImpl implements BearerTokenService {
     @Override
     public AccessTokenInfo revokeAccessToken(String tenantId, String authType, String userAccount, String accessId) {
         String accesskey = getAccessTokenKey(tenantId, authType, userAccount, accessId);
-        AccessTokenInfo accessTokenInfo = redisHelper.getValue(accesskey);
-        redisHelper.delete(accesskey);
+        AccessTokenInfo accessTokenInfo = tokenIndex.get(accesskey);
+        removeAccessToken(tenantId, authType, userAccount, accessId);
+        revokeVerifiedCache(tenantId, authType, userAccount, accessId);
         return accessTokenInfo;
     }
 
     @Override
     public RefreshTokenInfo revokeRefreshToken(String tenantId, String authType, String userAccount) {
         String refreshKey = getRefreshTokenKey(tenantId, authType, userAccount);
-        RefreshTokenInfo refreshTokenInfo = redisHelper.getValue(refreshKey);
-        redisHelper.delete(refreshKey);
-        redisHelper.deleteByPattern(bearerTokenDelegate.getAccessIssuer()
-                + ":auth:" + tenantId + ":access:" + authType + ":" + userAccount + ":*");
-        redisHelper.deleteByPattern(bearerTokenDelegate.getRefreshIssuer()
-                + ":auth:" + tenantId + ":oauth:" + authType + ":" + userAccount + ":*");
+        RefreshTokenInfo refreshTokenInfo = tokenIndex.get(refreshKey);
+        tokenIndex.remove(refreshKey, getRefreshIndex(tenantId));
+        tokenIndex.removeAll(getAccessUserIndex(tenantId, authType, userAccount), getAccessIndex(tenantId));
+        tokenIndex.removeAll(getOauthUserIndex(tenantId, authType, userAccount), getOauthIndex(tenantId));
+        revokeVerifiedCache(tenantId, authType, userAccount, null);
         return refreshTokenInfo;
     }
 
     @Override
     public RefreshTokenInfo revokeOauthToken(String tenantId, String authType, String userAccount, String appId) {
         String oauthkey = getOauthTokenKey(tenantId, authType, userAccount, appId);
-        RefreshTokenInfo oauthToken = redisHelper.getValue(oauthkey);
-        redisHelper.delete(oauthkey);
+        RefreshTokenInfo oauthToken = tokenIndex.get(oauthkey);
+        tokenIndex.remove(oauthkey, getOauthUserIndex(tenantId, authType, userAccount), getOauthIndex(tenantId));
         return oauthToken;
     }
 
     @Override
     public List<AccessTokenInfo> listAccessToken(String tenantId) {
-        return redisHelper.getByPattern(bearerTokenDelegate.getAccessIssuer() + ":auth:" + tenantId + ":access:*");
+        return tokenIndex.list(getAccessIndex(tenantId));
     }
 
     @Override
     public List<RefreshTokenInfo> listRefreshToken(String tenantId) {
-        return redisHelper.getByPattern(bearerTokenDelegate.getRefreshIssuer() + ":auth:" + tenantId + ":refresh:*");
+        return tokenIndex.list(getRefreshIndex(tenantId));
     }
 
     @Override
     public List<RefreshTokenInfo> listOauthToken(String tenantId) {
-        return redisHelper.getByPattern(bearerTokenDelegate.getRefreshIssuer() + ":auth:" + tenantId + ":oauth:*");
+        return tokenIndex.list(getOauthIndex(tenantId));
+    }
+
+    /**
+     * 将索引之前保存的令牌加入索引（SCAN一遍令牌key），集群内只需要执行一次
+     * <p/> 必须在所有节点都升级之后执行：执行后会设置已迁移标记，之后旧版本节点保存的令牌需要force重新迁移
+     *
+     * @param force 是否忽略已迁移标记
+     * @return 加入索引的令牌数量
+     */
+    public int migrateTokenIndex(boolean force) {
+        if (redisHelper == null) {
+            return 0;
+        }
+        String migratedKey = AUTH_INDEX_MIGRATED.formatted(bearerTokenDelegate.getAccessIssuer());
+        if (!force && redisHelper.existKey(migratedKey)) {
+            return 0;
+        }
+        String accessIssuer = bearerTokenDelegate.getAccessIssuer();
+        String refreshIssuer = bearerTokenDelegate.getRefreshIssuer();
+        int count = migrateTokenIndex(accessIssuer, true, accessIssuer.equals(refreshIssuer));
+        if (!accessIssuer.equals(refreshIssuer)) {
+            count += migrateTokenIndex(refreshIssuer, false, true);
+        }
+        redisHelper.putValue(migratedKey, System.currentTimeMillis());
+        return count;
+    }
+
+    private int migrateTokenIndex(String issuer, boolean access, boolean refresh) {
+        String prefix = issuer + ":auth:";
+        int count = 0;
+        for (String key : redisHelper.keys(prefix + "*")) {
+            // {tenantId}:access:{type}:{userAccount}:{accessId}、{tenantId}:refresh:{type}:{userAccount}、{tenantId}:oauth:{type}:{userAccount}:{appId}
+            String[] parts = key.substring(prefix.length()).split(":");
+            boolean indexed = false;
+            if (access && parts.length == 5 && "access".equals(parts[1])) {
+                indexed = tokenIndex.index(key,
+                        getAccessUserIndex(parts[0], parts[2], parts[3]), getAccessIndex(parts[0]));
+            } else if (refresh && parts.length == 4 && "refresh".equals(parts[1])) {
+                indexed = tokenIndex.index(key, getRefreshIndex(parts[0]));
+            } else if (refresh && parts.length == 5 && "oauth".equals(parts[1])) {
+                indexed = tokenIndex.index(key,
+                        getOauthUserIndex(parts[0], parts[2], parts[3]), getOauthIndex(parts[0]));
+            }
+            if (indexed) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void removeAccessToken(String tenantId, String authType, String userAccount, String accessId) {
+        tokenIndex.remove(getAccessTokenKey(tenantId, authType, userAccount, accessId),
+                getAccessUserIndex(tenantId, authType, userAccount), getAccessIndex(tenantId));
+    }
+
+    /**
+     * 令牌回收后，失效本地验证缓存并通知集群内其它节点
+     *
+     * @param accessId 为空时失效该用户的所有accessToken
+     */
+    protected void revokeVerifiedCache(String tenantId, String authType, String userAccount, String accessId) {
+        if (verifiedTokenCache == null) {
+            return;
+        }
+        verifiedTokenCache.invalidate(tenantId, authType, userAccount, accessId);
+        if (redisHelper != null) {
+            redisHelper.sendChannel(getRevokeChannel(), new TokenRevocation(tenantId, authType, userAccount, accessId));
+        }
+    }
+
+    public String getRevokeChannel() {
+        return AUTH_REVOKE_CHANNEL.formatted(bearerTokenDelegate.getAccessIssuer());
     }
 
     private String getAccessTokenKey(AccessUserDetails userDetails) {
@@ -503,6 +662,26 @@ public class BearerTokenServiceImpl implements BearerTokenService {
         return AUTH_OAUTH_KEY.formatted(bearerTokenDelegate.getRefreshIssuer(), tenantId, type, userAccount, appId);
     }
 
+    private String getAccessIndex(String tenantId) {
+        return AUTH_ACCESS_INDEX.formatted(bearerTokenDelegate.getAccessIssuer(), tenantId);
+    }
+
+    private String getAccessUserIndex(String tenantId, String type, String userAccount) {
+        return AUTH_ACCESS_USER_INDEX.formatted(bearerTokenDelegate.getAccessIssuer(), tenantId, type, userAccount);
+    }
+
+    private String getRefreshIndex(String tenantId) {
+        return AUTH_REFRESH_INDEX.formatted(bearerTokenDelegate.getRefreshIssuer(), tenantId);
+    }
+
+    private String getOauthIndex(String tenantId) {
+        return AUTH_OAUTH_INDEX.formatted(bearerTokenDelegate.getRefreshIssuer(), tenantId);
+    }
+
+    private String getOauthUserIndex(String tenantId, String type, String userAccount) {
+        return AUTH_OAUTH_USER_INDEX.formatted(bearerTokenDelegate.getRefreshIssuer(), tenantId, type, userAccount);
+    }
+
     @Override
     public boolean validAccessToken(String accessToken) {
         if (StringUtils.isBlank(accessToken)) {
@@ -512,15 +691,25 @@ public class BearerTokenServiceImpl implements BearerTokenService {
             accessToken = accessToken.replace("Bearer ", "");
         }
         try {
-            SignatureAlgorithm algorithm = bearerTokenDelegate.getAccessAlgorithm();
-            Key verificationKey = bearerTokenDelegate.getAccessVerificationKey(algorithm);
-            Jwts.parser().setSigningKey(verificationKey).parseClaimsJws(accessToken).getBody();
+            bearerTokenDelegate.getAccessParser().parseClaimsJws(accessToken).getBody();
         } catch (Exception e) {
             return false;
         }
         return true;
     }
 
+    private void recordSize(String type, String token) {
+        if (tokenSizeMetrics != null) {
+            tokenSizeMetrics.record(type, token.length());
+        }
+    }
+
+    private void setKeyId(JwtBuilder jwtBuilder, String keyId) {
+        if (keyId != null) {
+            jwtBuilder.setHeaderParam(JwsHeader.KEY_ID, keyId);
+        }
+    }
+
     protected void writeResponse(HttpServletResponse response, ResponseCode responseCode, String messageKey) throws IOException {
         int httpStatus = responseCode.getStatus();
         if (bearerTokenDelegate.alwaysReturnHttp200()) {
@@ -0,0 +1,219 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.security;
+
+import java.util.*;
+
+/**
+ * 紧凑claims编码
+ * <p/> 将roles、permissions、permitScopes、userProperties编码到一个claim中（二进制 + base64url，较大时deflate压缩）；
+ * 配置了权限字典时，字典中的权限只写位图，不在字典中的权限仍然写字符串
+ * <p/> 解码后permissions按字典顺序排列（字典外的在最后），重复的权限会合并
+ *
+ * @author shanhuiming
+ */
+public class CompactClaimsCodec {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int FLAG_DEFLATE = 1;
+
+    private static final int DEFLATE_THRESHOLD = 128;
+
+    private final PermitDictionary dictionary;
+
+    /**
+     * @param dictionary 权限字典，null表示权限直接写字符串
+     */
+    public CompactClaimsCodec(PermitDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    public String encode(AccessUserDetails userDetails) {
+        CompactCodec.Writer writer = new CompactCodec.Writer(256);
+        if (dictionary == null) {
+            writer.writeVarint(0);
+        } else {
+            writer.writeVarint(1);
+            writer.writeZigzag(dictionary.version());
+        }
+        writer.writeStrings(userDetails.getRoles());
+        writePermits(writer, userDetails.getPermissions());
+        writeScopes(writer, userDetails.getPermitScopes());
+        writer.writeMap(userDetails.getUserProperties());
+        byte[] payload = writer.toByteArray();
+
+        CompactCodec.Writer output = new CompactCodec.Writer(payload.length + 8);
+        output.writeByte(FORMAT_VERSION);
+        byte[] deflated = payload.length >= DEFLATE_THRESHOLD ? CompactCodec.deflate(payload) : null;
+        if (deflated != null && deflated.length + 4 < payload.length) {
+            output.writeByte(FLAG_DEFLATE);
+            output.writeVarint(payload.length);
+            output.writeBytes(deflated);
+        } else {
+            output.writeByte(0);
+            output.writeBytes(payload);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(output.toByteArray());
+    }
+
+    /**
+     * 解码并设置到userDetails
+     *
+     * @throws IllegalArgumentException 格式错误或者权限字典版本不一致
+     */
+    public void decode(String claim, AccessUserDetails userDetails) {
+        byte[] bytes = Base64.getUrlDecoder().decode(claim);
+        CompactCodec.Reader header = new CompactCodec.Reader(bytes);
+        int version = header.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("unsupported compact claims version " + version);
+        }
+        CompactCodec.Reader reader;
+        if ((header.readByte() & FLAG_DEFLATE) != 0) {
+            int length = (int) header.readVarint();
+            reader = new CompactCodec.Reader(
+                    CompactCodec.inflate(bytes, header.position(), header.remaining(), length));
+        } else {
+            reader = new CompactCodec.Reader(bytes, header.position(), header.remaining());
+        }
+
+        boolean useDictionary = reader.readVarint() == 1;
+        if (useDictionary) {
+            int dictionaryVersion = (int) reader.readZigzag();
+            if (dictionary == null || dictionary.version() != dictionaryVersion) {
+                throw new IllegalArgumentException("permit dictionary version changed");
+            }
+        }
+        userDetails.setRoles(reader.readStrings());
+        userDetails.setPermissions(readPermits(reader, useDictionary));
+        userDetails.setPermitScopes(readScopes(reader, useDictionary));
+        userDetails.setUserProperties(reader.readMap());
+    }
+
+    private void writePermits(CompactCodec.Writer writer, List<String> permits) {
+        if (permits == null) {
+            writer.writeVarint(0);
+            return;
+        }
+        writer.writeVarint(1);
+        if (dictionary == null) {
+            writer.writeStrings(permits);
+            return;
+        }
+        BitSet bits = new BitSet();
+        List<String> others = new ArrayList<>();
+        for (String permit : permits) {
+            int id = permit == null ? -1 : dictionary.idOf(permit);
+            if (id >= 0) {
+                bits.set(id);
+            } else {
+                others.add(permit);
+            }
+        }
+        byte[] bitBytes = bits.toByteArray();
+        writer.writeVarint(bitBytes.length);
+        writer.writeBytes(bitBytes);
+        writer.writeStrings(others);
+    }
+
+    private List<String> readPermits(CompactCodec.Reader reader, boolean useDictionary) {
+        if (reader.readVarint() == 0) {
+            return null;
+        }
+        if (!useDictionary) {
+            return reader.readStrings();
+        }
+        BitSet bits = BitSet.valueOf(reader.readBytes(reader.readLength()));
+        List<String> others = reader.readStrings();
+        List<String> permits = new ArrayList<>(bits.cardinality() + (others == null ? 0 : others.size()));
+        for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+            String permit = dictionary.permitOf(id);
+            if (permit == null) {
+                throw new IllegalArgumentException("permit id " + id + " not in dictionary");
+            }
+            permits.add(permit);
+        }
+        if (others != null) {
+            permits.addAll(others);
+        }
+        return permits;
+    }
+
+    private void writeScopes(CompactCodec.Writer writer, Map<String, List<Integer>> scopes) {
+        if (scopes == null) {
+            writer.writeVarint(0);
+            return;
+        }
+        writer.writeVarint(scopes.size() + 1L);
+        for (Map.Entry<String, List<Integer>> entry : scopes.entrySet()) {
+            int id = dictionary == null || entry.getKey() == null ? -1 : dictionary.idOf(entry.getKey());
+            if (dictionary != null) {
+                writer.writeVarint(id + 1L);
+            }
+            if (id < 0) {
+                writer.writeString(entry.getKey());
+            }
+
+            List<Integer> scopeIds = entry.getValue();
+            if (scopeIds == null) {
+                writer.writeVarint(0);
+                continue;
+            }
+            // null元素丢弃
+            int count = 0;
+            for (Integer scopeId : scopeIds) {
+                if (scopeId != null) {
+                    count++;
+                }
+            }
+            writer.writeVarint(count + 1L);
+            for (Integer scopeId : scopeIds) {
+                if (scopeId != null) {
+                    writer.writeZigzag(scopeId);
+                }
+            }
+        }
+    }
+
+    private Map<String, List<Integer>> readScopes(CompactCodec.Reader reader, boolean useDictionary) {
+        int size = reader.readLength();
+        if (size == 0) {
+            return null;
+        }
+        Map<String, List<Integer>> scopes = new HashMap<>(size * 2);
+        for (int i = 1; i < size; i++) {
+            String permit;
+            int id = useDictionary ? (int) reader.readVarint() - 1 : -1;
+            if (id >= 0) {
+                permit = dictionary.permitOf(id);
+                if (permit == null) {
+                    throw new IllegalArgumentException("permit id " + id + " not in dictionary");
+                }
+            } else {
+                permit = reader.readString();
+            }
+
+            int count = reader.readLength();
+            List<Integer> scopeIds = null;
+            if (count > 0) {
+                scopeIds = new ArrayList<>(count - 1);
+                for (int j = 1; j < count; j++) {
+                    scopeIds.add((int) reader.readZigzag());
+                }
+            }
+            scopes.put(permit, scopeIds);
+        }
+        return scopes;
+    }
+}
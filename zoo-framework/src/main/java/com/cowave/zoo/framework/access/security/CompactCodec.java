@@ -0,0 +1,375 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.security;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 紧凑二进制编码（varint长度/整数 + 带类型标记的值）
+ * <p/> 供令牌claims和Redis令牌信息使用，不是通用的序列化格式
+ *
+ * @author shanhuiming
+ */
+final class CompactCodec {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final int T_NULL = 0;
+    private static final int T_STRING = 1;
+    private static final int T_INT = 2;
+    private static final int T_LONG = 3;
+    private static final int T_TRUE = 4;
+    private static final int T_FALSE = 5;
+    private static final int T_DOUBLE = 6;
+    private static final int T_LIST = 7;
+    private static final int T_MAP = 8;
+    private static final int T_DATE = 9;
+    // 其它类型按json写入，读出来是Map/List等通用类型
+    private static final int T_JSON = 10;
+
+    private CompactCodec() {
+
+    }
+
+    static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(bytes.length);
+            byte[] buffer = new byte[Math.max(64, bytes.length)];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] inflate(byte[] bytes, int offset, int length, int originLength) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(bytes, offset, length);
+            byte[] output = new byte[originLength];
+            int count = 0;
+            while (count < originLength && !inflater.finished()) {
+                int n = inflater.inflate(output, count, originLength - count);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                count += n;
+            }
+            if (count != originLength) {
+                throw new IllegalArgumentException("compact data truncated");
+            }
+            return output;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("compact data corrupted", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    static final class Writer {
+
+        private byte[] buffer;
+
+        private int count;
+
+        Writer(int capacity) {
+            this.buffer = new byte[Math.max(16, capacity)];
+        }
+
+        int size() {
+            return count;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, count);
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[count++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, count, bytes.length);
+            count += bytes.length;
+        }
+
+        void writeVarint(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[count++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[count++] = (byte) value;
+        }
+
+        void writeZigzag(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        /**
+         * 长度+1，0表示null
+         */
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1L);
+            writeBytes(bytes);
+        }
+
+        void writeStrings(Collection<String> values) {
+            if (values == null) {
+                writeVarint(0);
+                return;
+            }
+            writeVarint(values.size() + 1L);
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        void writeDate(Date date) {
+            if (date == null) {
+                writeVarint(0);
+                return;
+            }
+            writeVarint(1);
+            writeZigzag(date.getTime());
+        }
+
+        void writeValue(Object value) {
+            if (value == null) {
+                writeByte(T_NULL);
+            } else if (value instanceof String str) {
+                writeByte(T_STRING);
+                writeString(str);
+            } else if (value instanceof Integer i) {
+                writeByte(T_INT);
+                writeZigzag(i);
+            } else if (value instanceof Long l) {
+                writeByte(T_LONG);
+                writeZigzag(l);
+            } else if (value instanceof Boolean b) {
+                writeByte(b ? T_TRUE : T_FALSE);
+            } else if (value instanceof Double d) {
+                writeByte(T_DOUBLE);
+                writeZigzag(Double.doubleToRawLongBits(d));
+            } else if (value instanceof Date date) {
+                writeByte(T_DATE);
+                writeZigzag(date.getTime());
+            } else if (value instanceof List<?> list) {
+                writeByte(T_LIST);
+                writeVarint(list.size());
+                for (Object element : list) {
+                    writeValue(element);
+                }
+            } else if (value instanceof Map<?, ?> map) {
+                writeByte(T_MAP);
+                writeMap(map);
+            } else {
+                writeByte(T_JSON);
+                try {
+                    writeString(MAPPER.writeValueAsString(value));
+                } catch (JsonProcessingException e) {
+                    throw new IllegalArgumentException("unsupported value " + value.getClass(), e);
+                }
+            }
+        }
+
+        /**
+         * 个数+1，0表示null
+         */
+        void writeMap(Map<?, ?> map) {
+            if (map == null) {
+                writeVarint(0);
+                return;
+            }
+            writeVarint(map.size() + 1L);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeString(String.valueOf(entry.getKey()));
+                writeValue(entry.getValue());
+            }
+        }
+
+        private void ensure(int length) {
+            if (count + length > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, count + length));
+            }
+        }
+    }
+
+    static final class Reader {
+
+        private final byte[] buffer;
+
+        private final int limit;
+
+        private int position;
+
+        Reader(byte[] buffer) {
+            this(buffer, 0, buffer.length);
+        }
+
+        Reader(byte[] buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.limit = offset + length;
+        }
+
+        int position() {
+            return position;
+        }
+
+        int remaining() {
+            return limit - position;
+        }
+
+        int readByte() {
+            if (position >= limit) {
+                throw new IllegalArgumentException("compact data truncated");
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        byte[] readBytes(int length) {
+            if (length < 0 || length > remaining()) {
+                throw new IllegalArgumentException("compact data truncated");
+            }
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("compact varint overflow");
+        }
+
+        long readZigzag() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readLength() {
+            long value = readVarint();
+            if (value > remaining() + 1L) {
+                throw new IllegalArgumentException("compact data truncated");
+            }
+            return (int) value;
+        }
+
+        String readString() {
+            int length = readLength();
+            if (length == 0) {
+                return null;
+            }
+            String value = new String(buffer, position, length - 1, StandardCharsets.UTF_8);
+            position += length - 1;
+            return value;
+        }
+
+        List<String> readStrings() {
+            int size = readLength();
+            if (size == 0) {
+                return null;
+            }
+            List<String> list = new ArrayList<>(size - 1);
+            for (int i = 1; i < size; i++) {
+                list.add(readString());
+            }
+            return list;
+        }
+
+        Date readDate() {
+            if (readVarint() == 0) {
+                return null;
+            }
+            return new Date(readZigzag());
+        }
+
+        Object readValue() {
+            int tag = readByte();
+            switch (tag) {
+                case T_NULL:
+                    return null;
+                case T_STRING:
+                    return readString();
+                case T_INT:
+                    return (int) readZigzag();
+                case T_LONG:
+                    return readZigzag();
+                case T_TRUE:
+                    return Boolean.TRUE;
+                case T_FALSE:
+                    return Boolean.FALSE;
+                case T_DOUBLE:
+                    return Double.longBitsToDouble(readZigzag());
+                case T_DATE:
+                    return new Date(readZigzag());
+                case T_LIST:
+                    int size = readLength();
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                case T_MAP:
+                    return readMap();
+                case T_JSON:
+                    try {
+                        return MAPPER.readValue(readString(), Object.class);
+                    } catch (JsonProcessingException e) {
+                        throw new IllegalArgumentException("compact json value corrupted", e);
+                    }
+                default:
+                    throw new IllegalArgumentException("unknown compact value tag " + tag);
+            }
+        }
+
+        Map<String, Object> readMap() {
+            int size = readLength();
+            if (size == 0) {
+                return null;
+            }
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (int i = 1; i < size; i++) {
+                map.put(readString(), readValue());
+            }
+            return map;
+        }
+    }
+}
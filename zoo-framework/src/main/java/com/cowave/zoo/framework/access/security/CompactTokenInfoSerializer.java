@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.security;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redis令牌信息（AccessTokenInfo/RefreshTokenInfo）的紧凑二进制序列化
+ * <p/> 以魔数开头，读取时不是魔数开头的数据（切换前保存的json）交给fallback反序列化，其它类型的对象也交给fallback序列化；
+ * 读取总是同时支持两种格式，writeCompact只决定写入的格式，这样切回json时之前保存的compact令牌仍然可以读取
+ *
+ * @author shanhuiming
+ */
+public class CompactTokenInfoSerializer implements RedisSerializer<Object> {
+
+    // json以{、[、"等开头，不会冲突
+    private static final int MAGIC = 0xC7;
+
+    private static final int TYPE_ACCESS = 1;
+
+    private static final int TYPE_REFRESH = 2;
+
+    private static final int FLAG_DEFLATE = 1;
+
+    private static final int DEFLATE_THRESHOLD = 256;
+
+    private final RedisSerializer<Object> fallback;
+
+    private final boolean writeCompact;
+
+    public CompactTokenInfoSerializer(RedisSerializer<Object> fallback) {
+        this(fallback, true);
+    }
+
+    /**
+     * @param writeCompact false时以fallback写入（json），只读取compact
+     */
+    public CompactTokenInfoSerializer(RedisSerializer<Object> fallback, boolean writeCompact) {
+        this.fallback = fallback;
+        this.writeCompact = writeCompact;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (!writeCompact) {
+            return fallback.serialize(value);
+        }
+        int type;
+        CompactCodec.Writer writer = new CompactCodec.Writer(256);
+        if (value instanceof AccessTokenInfo info) {
+            type = TYPE_ACCESS;
+            writeAccess(writer, info);
+        } else if (value instanceof RefreshTokenInfo info) {
+            type = TYPE_REFRESH;
+            writeRefresh(writer, info);
+        } else {
+            return fallback.serialize(value);
+        }
+        byte[] payload = writer.toByteArray();
+
+        CompactCodec.Writer output = new CompactCodec.Writer(payload.length + 8);
+        output.writeByte(MAGIC);
+        output.writeByte(type);
+        byte[] deflated = payload.length >= DEFLATE_THRESHOLD ? CompactCodec.deflate(payload) : null;
+        if (deflated != null && deflated.length + 4 < payload.length) {
+            output.writeByte(FLAG_DEFLATE);
+            output.writeVarint(payload.length);
+            output.writeBytes(deflated);
+        } else {
+            output.writeByte(0);
+            output.writeBytes(payload);
+        }
+        return output.toByteArray();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length < 3 || (bytes[0] & 0xFF) != MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+        try {
+            CompactCodec.Reader header = new CompactCodec.Reader(bytes, 1, bytes.length - 1);
+            int type = header.readByte();
+            CompactCodec.Reader reader;
+            if ((header.readByte() & FLAG_DEFLATE) != 0) {
+                int length = (int) header.readVarint();
+                reader = new CompactCodec.Reader(
+                        CompactCodec.inflate(bytes, header.position(), header.remaining(), length));
+            } else {
+                reader = new CompactCodec.Reader(bytes, header.position(), header.remaining());
+            }
+            return switch (type) {
+                case TYPE_ACCESS -> readAccess(reader);
+                case TYPE_REFRESH -> readRefresh(reader);
+                default -> throw new SerializationException("unknown compact token info type " + type);
+            };
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("compact token info corrupted", e);
+        }
+    }
+
+    private void writeAccess(CompactCodec.Writer writer, AccessTokenInfo info) {
+        writer.writeString(info.getAccessId());
+        writer.writeString(info.getRefreshId());
+        writer.writeString(info.getAccessType());
+        writer.writeString(info.getUserAccount());
+        writer.writeString(info.getUserName());
+        writer.writeVarint(info.getRevoked());
+        writer.writeString(info.getAccessIp());
+        writer.writeDate(info.getAccessTime());
+    }
+
+    private AccessTokenInfo readAccess(CompactCodec.Reader reader) {
+        AccessTokenInfo info = new AccessTokenInfo();
+        info.setAccessId(reader.readString());
+        info.setRefreshId(reader.readString());
+        info.setAccessType(reader.readString());
+        info.setUserAccount(reader.readString());
+        info.setUserName(reader.readString());
+        info.setRevoked((int) reader.readVarint());
+        info.setAccessIp(reader.readString());
+        info.setAccessTime(reader.readDate());
+        return info;
+    }
+
+    private void writeRefresh(CompactCodec.Writer writer, RefreshTokenInfo info) {
+        writer.writeString(info.getAccessId());
+        writer.writeString(info.getRefreshId());
+        writer.writeString(info.getAuthType());
+        writer.writeString(info.getOauthId());
+        writer.writeString(info.getOauthName());
+        writer.writeStrings(info.getApps());
+        writer.writeString(info.getTenantId());
+        writer.writeValue(info.getUserId());
+        writer.writeValue(info.getUserCode());
+        writer.writeString(info.getUserAccount());
+        writer.writeString(info.getUserName());
+        writer.writeString(info.getUserType());
+        writer.writeMap(info.getUserProperties());
+        writer.writeStrings(info.getRoles());
+        writer.writeStrings(info.getPermissions());
+        writer.writeValue(info.getPermitScopes());
+        writer.writeValue(info.getDeptId());
+        writer.writeValue(info.getDeptCode());
+        writer.writeString(info.getDeptName());
+        writer.writeValue(info.getClusterId());
+        writer.writeValue(info.getClusterLevel());
+        writer.writeString(info.getClusterName());
+        writer.writeByte((info.isAccessUnique() ? 1 : 0) | (info.isAccessValid() ? 2 : 0));
+        writer.writeString(info.getLoginIp());
+        writer.writeDate(info.getLoginTime());
+    }
+
+    @SuppressWarnings("unchecked")
+    private RefreshTokenInfo readRefresh(CompactCodec.Reader reader) {
+        RefreshTokenInfo info = new RefreshTokenInfo();
+        info.setAccessId(reader.readString());
+        info.setRefreshId(reader.readString());
+        info.setAuthType(reader.readString());
+        info.setOauthId(reader.readString());
+        info.setOauthName(reader.readString());
+        info.setApps(reader.readStrings());
+        info.setTenantId(reader.readString());
+        info.setUserId(reader.readValue());
+        info.setUserCode(reader.readValue());
+        info.setUserAccount(reader.readString());
+        info.setUserName(reader.readString());
+        info.setUserType(reader.readString());
+        info.setUserProperties(reader.readMap());
+        info.setRoles(reader.readStrings());
+        info.setPermissions(reader.readStrings());
+        info.setPermitScopes((Map<String, List<Integer>>) reader.readValue());
+        info.setDeptId(reader.readValue());
+        info.setDeptCode(reader.readValue());
+        info.setDeptName(reader.readString());
+        info.setClusterId((Integer) reader.readValue());
+        info.setClusterLevel((Integer) reader.readValue());
+        info.setClusterName(reader.readString());
+        int flags = reader.readByte();
+        info.setAccessUnique((flags & 1) != 0);
+        info.setAccessValid((flags & 2) != 0);
+        info.setLoginIp(reader.readString());
+        info.setLoginTime(reader.readDate());
+        return info;
+    }
+}
@@ -57,8 +57,8 @@ public class Permission {
      * 是否管理员
      */
     public boolean isAdmin() {
-        List<String> roles = Access.userRoles();
-        return !roles.isEmpty() && roles.contains(ROLE_ADMIN);
+        AccessUserDetails userDetails = Access.userDetails();
+        return userDetails != null && userDetails.isAdmin();
     }
 
     /**
@@ -66,9 +66,7 @@ public class Permission {
      */
     public boolean isSystemAdmin() {
         String tenantId = Access.tenantId();
-        List<String> roles = Access.userRoles();
-        return StringUtils.isNotBlank(tenantId) && !roles.isEmpty()
-                && TENANT_SYSTEM.equals(tenantId) && roles.contains(ROLE_ADMIN);
+        return StringUtils.isNotBlank(tenantId) && TENANT_SYSTEM.equals(tenantId) && isAdmin();
     }
 
     /**
@@ -102,20 +100,18 @@ public class Permission {
             return true;
         }
 
-        List<String> permits = Access.userPermits();
-        if(CollectionUtils.isEmpty(permits)) {
+        AccessUserDetails userDetails = Access.userDetails();
+        if(userDetails == null || CollectionUtils.isEmpty(userDetails.getPermissions())) {
             return false;
         }
 
-        for (String permit : permits) {
-            if (StringUtils.isNotBlank(permit) && matchPermit(permit, permission)) {
-                Access access = Access.get();
-                if (access != null) {
-                    access.setPermit(permission);
-                    access.setScopeIds(Access.userPermitScopes().get(permission));
-                }
-                return true;
+        if (userDetails.matchPermit(permission)) {
+            Access access = Access.get();
+            if (access != null) {
+                access.setPermit(permission);
+                access.setScopeIds(Access.userPermitScopes().get(permission));
             }
+            return true;
         }
         return false;
     }
@@ -123,22 +119,4 @@ public class Permission {
     public boolean isIgnore() {
         return !accessProperties.authEnable() && StringUtils.isBlank(Access.getRequestHeader(X_User_Payload));
     }
-
-    private boolean matchPermit(String srcPermit, String destPermit) {
-        String[] src = srcPermit.split(":");
-        String[] dest = destPermit.split(":");
-        // 左匹配
-        for (int index = 0; index < src.length; index++) {
-            if (PERMIT_ADMIN.equals(src[index])) {
-                return true;
-            }
-            if (index >= dest.length) {
-                return false;
-            }
-            if (!src[index].equals(dest[index])) {
-                return false;
-            }
-        }
-        return true;
-    }
 }
@@ -0,0 +1,69 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.security;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 服务端权限字典，紧凑claims中的操作权限以字典id的位图表示
+ * <p/> 集群内所有节点的字典必须一致；字典变化后应更换版本，旧版本签发的令牌将解析失败，需要重新登录
+ *
+ * @author shanhuiming
+ */
+public interface PermitDictionary {
+
+    /**
+     * 字典版本
+     */
+    int version();
+
+    /**
+     * 权限id（从0开始，id越小位图越短），不在字典中返回-1
+     */
+    int idOf(String permit);
+
+    /**
+     * id对应的权限，不存在返回null
+     */
+    String permitOf(int id);
+
+    /**
+     * 按列表顺序分配id，版本为列表的hashCode
+     */
+    static PermitDictionary of(List<String> permits) {
+        List<String> list = List.copyOf(permits);
+        Map<String, Integer> ids = new HashMap<>(list.size() * 2);
+        for (int i = 0; i < list.size(); i++) {
+            ids.putIfAbsent(list.get(i), i);
+        }
+        int version = list.hashCode();
+        return new PermitDictionary() {
+            @Override
+            public int version() {
+                return version;
+            }
+
+            @Override
+            public int idOf(String permit) {
+                return ids.getOrDefault(permit, -1);
+            }
+
+            @Override
+            public String permitOf(int id) {
+                return id >= 0 && id < list.size() ? list.get(id) : null;
+            }
+        };
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.security;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 权限匹配（按:分段的前缀树）
+ * <p/> 匹配规则与逐个比较一致：拥有的权限是请求权限的分段前缀，或者在某一段为*（之后的段都忽略）；
+ * 构造后只读，匹配时不拆分字符串，也不分配对象
+ *
+ * @author shanhuiming
+ */
+public final class PermitMatcher {
+
+    private final Node root;
+
+    private PermitMatcher(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * 编译用户拥有的权限
+     */
+    public static PermitMatcher compile(Collection<String> permits) {
+        Node root = new Node();
+        if (permits != null) {
+            for (String permit : permits) {
+                if (StringUtils.isNotBlank(permit)) {
+                    insert(root, permit.split(":"));
+                }
+            }
+        }
+        root.freeze();
+        return new PermitMatcher(root);
+    }
+
+    private static void insert(Node root, String[] segments) {
+        Node node = root;
+        for (String segment : segments) {
+            // 更短的前缀已经覆盖
+            if (node.terminal) {
+                return;
+            }
+            if (Permission.PERMIT_ADMIN.equals(segment)) {
+                node.terminal = true;
+                return;
+            }
+            node = node.building.computeIfAbsent(segment, k -> new Node());
+        }
+        node.terminal = true;
+    }
+
+    /**
+     * 是否匹配请求的权限
+     */
+    public boolean matches(String permission) {
+        // 与split(":")一致，忽略末尾的空段
+        int end = permission.length();
+        while (end > 0 && permission.charAt(end - 1) == ':') {
+            end--;
+        }
+
+        Node node = root;
+        int start = 0;
+        boolean more = end > 0;
+        while (more) {
+            if (node.terminal) {
+                return true;
+            }
+            int separator = permission.indexOf(':', start);
+            int segmentEnd = separator < 0 || separator >= end ? end : separator;
+            node = node.find(permission, start, segmentEnd);
+            if (node == null) {
+                return false;
+            }
+            more = segmentEnd < end;
+            start = segmentEnd + 1;
+        }
+        return node.terminal;
+    }
+
+    private static class Node {
+
+        private boolean terminal;
+
+        private Map<String, Node> building = new HashMap<>();
+
+        // 开放寻址，按区间计算hash查找，避免substring
+        private String[] keys;
+
+        private Node[] children;
+
+        private int mask;
+
+        void freeze() {
+            if (!building.isEmpty()) {
+                int capacity = Integer.highestOneBit(building.size() * 2 - 1) << 1;
+                keys = new String[capacity];
+                children = new Node[capacity];
+                mask = capacity - 1;
+                for (Map.Entry<String, Node> entry : building.entrySet()) {
+                    int index = spread(entry.getKey().hashCode()) & mask;
+                    while (keys[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+                    keys[index] = entry.getKey();
+                    children[index] = entry.getValue();
+                    entry.getValue().freeze();
+                }
+            }
+            building = null;
+        }
+
+        Node find(String str, int from, int to) {
+            if (keys == null) {
+                return null;
+            }
+            int hash = 0;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + str.charAt(i);
+            }
+            int length = to - from;
+            int index = spread(hash) & mask;
+            String key;
+            while ((key = keys[index]) != null) {
+                if (key.length() == length && key.regionMatches(0, str, from, length)) {
+                    return children[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return null;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
@@ -16,17 +16,24 @@ import com.cowave.zoo.framework.access.AccessProperties;
 import com.cowave.zoo.framework.access.annotation.AnonymousAccess;
 import com.cowave.zoo.framework.access.filter.AccessIdGenerator;
 import com.cowave.zoo.framework.configuration.ApplicationProperties;
+import com.cowave.zoo.framework.helper.redis.RedisChannelSubscriber;
 import com.cowave.zoo.framework.helper.redis.RedisHelper;
 import com.cowave.zoo.tools.Collections;
 import com.cowave.zoo.tools.SpringContext;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.ArrayUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.ProviderManager;
@@ -54,6 +61,7 @@ import java.util.stream.Stream;
 @ConditionalOnClass({SecurityFilterChain.class})
 @EnableGlobalMethodSecurity(prePostEnabled = true, securedEnabled = true)
 @EnableWebSecurity
+@Slf4j
 @Configuration
 @RequiredArgsConstructor
 public class SecurityConfiguration {
@@ -70,15 +78,86 @@ public class SecurityConfiguration {
 
     @ConditionalOnMissingBean(BearerTokenDelegate.class)
     @Bean
-    public BearerTokenDelegate bearerTokenDelegate() {
-        return new BearerTokenDelegateImpl(accessProperties, applicationProperties);
+    public BearerTokenDelegate bearerTokenDelegate(@Nullable PermitDictionary permitDictionary) {
+        return new BearerTokenDelegateImpl(accessProperties, applicationProperties, permitDictionary);
     }
 
     @ConditionalOnMissingBean(BearerTokenService.class)
     @Bean
     public BearerTokenService bearerTokenService(@Nullable RedisHelper redisHelper, ObjectMapper objectMapper,
-                                                 AccessIdGenerator accessIdGenerator, BearerTokenDelegate bearerTokenDelegate) {
-        return new BearerTokenServiceImpl(redisHelper, objectMapper, accessIdGenerator, bearerTokenDelegate);
+                                                 AccessIdGenerator accessIdGenerator, BearerTokenDelegate bearerTokenDelegate,
+                                                 @Nullable VerifiedTokenCache verifiedTokenCache, TokenSizeMetrics tokenSizeMetrics) {
+        // 读取总是兼容两种格式，配置只决定写入格式
+        RedisSerializer<Object> tokenInfoSerializer = null;
+        if (redisHelper != null) {
+            tokenInfoSerializer = new CompactTokenInfoSerializer(redisHelper.getValueSerializer(),
+                    "compact".equals(accessProperties.tokenInfoFormat()));
+        }
+        return new BearerTokenServiceImpl(redisHelper, objectMapper, accessIdGenerator,
+                bearerTokenDelegate, verifiedTokenCache, tokenInfoSerializer, tokenSizeMetrics);
+    }
+
+    /**
+     * 令牌大小统计
+     */
+    @ConditionalOnMissingBean(TokenSizeMetrics.class)
+    @Bean
+    public TokenSizeMetrics tokenSizeMetrics() {
+        return new TokenSizeMetrics();
+    }
+
+    /**
+     * 验证通过的accessToken本地缓存
+     */
+    @ConditionalOnExpression("${spring.access.auth.token-cache-seconds:0} > 0")
+    @ConditionalOnMissingBean(VerifiedTokenCache.class)
+    @Bean
+    public VerifiedTokenCache verifiedTokenCache() {
+        return new VerifiedTokenCache(accessProperties.tokenCacheSeconds(), accessProperties.tokenCacheSize());
+    }
+
+    /**
+     * 将之前保存的令牌加入索引（集群内只执行一次），所有节点升级之后再开启
+     */
+    @ConditionalOnProperty(name = "spring.access.auth.token-index-migrate", havingValue = "true")
+    @Bean
+    public SmartInitializingSingleton tokenIndexMigration(ObjectProvider<BearerTokenService> bearerTokenService) {
+        return () -> {
+            if (!(bearerTokenService.getIfAvailable() instanceof BearerTokenServiceImpl tokenService)) {
+                return;
+            }
+            try {
+                int count = tokenService.migrateTokenIndex(false);
+                if (count > 0) {
+                    log.info("migrated {} tokens into token index", count);
+                }
+            } catch (Exception e) {
+                log.error("token index migrate failed", e);
+            }
+        };
+    }
+
+    /**
+     * 订阅令牌回收通知
+     */
+    @ConditionalOnClass(name = "org.springframework.data.redis.listener.RedisMessageListenerContainer")
+    @Configuration
+    static class TokenRevocationConfiguration {
+
+        @Bean
+        public SmartInitializingSingleton tokenRevocationSubscriber(ObjectProvider<VerifiedTokenCache> verifiedTokenCache,
+                ObjectProvider<RedisHelper> redisHelper, ObjectProvider<RedisMessageListenerContainer> listenerContainer,
+                BearerTokenDelegate bearerTokenDelegate) {
+            String channel = BearerTokenServiceImpl.AUTH_REVOKE_CHANNEL.formatted(bearerTokenDelegate.getAccessIssuer());
+            return new RedisChannelSubscriber(listenerContainer, channel, () -> {
+                VerifiedTokenCache cache = verifiedTokenCache.getIfAvailable();
+                RedisHelper helper = redisHelper.getIfAvailable();
+                if (cache == null || helper == null) {
+                    return null;
+                }
+                return new TokenRevocationListener(cache, helper.getValueSerializer());
+            });
+        }
     }
 
     @ConditionalOnMissingBean(TenantUserDetailsService.class)
@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 令牌回收通知
+ *
+ * @author shanhuiming
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class TokenRevocation {
+
+    /**
+     * 租户id
+     */
+    private String tenantId;
+
+    /**
+     * 令牌类型
+     */
+    private String authType;
+
+    /**
+     * 用户账号
+     */
+    private String userAccount;
+
+    /**
+     * Access Token id，为空表示用户的所有令牌
+     */
+    private String accessId;
+}
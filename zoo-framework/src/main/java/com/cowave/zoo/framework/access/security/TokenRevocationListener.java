@@ -0,0 +1,56 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * 接收其它节点的令牌回收通知，失效本地验证缓存
+ *
+ * @author shanhuiming
+ */
+@Slf4j
+public class TokenRevocationListener implements MessageListener {
+
+    private final VerifiedTokenCache verifiedTokenCache;
+
+    private final RedisSerializer<?> valueSerializer;
+
+    /**
+     * @param valueSerializer 与发送通知的RedisHelper一致
+     */
+    public TokenRevocationListener(VerifiedTokenCache verifiedTokenCache, RedisSerializer<?> valueSerializer) {
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.valueSerializer = valueSerializer;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object value;
+        try {
+            value = valueSerializer.deserialize(message.getBody());
+        } catch (Exception e) {
+            // 无法识别的通知，保守起见清空缓存
+            log.error("invalid token revocation message", e);
+            verifiedTokenCache.clear();
+            return;
+        }
+        if (value instanceof TokenRevocation revocation) {
+            verifiedTokenCache.invalidate(revocation.getTenantId(),
+                    revocation.getAuthType(), revocation.getUserAccount(), revocation.getAccessId());
+        }
+    }
+}
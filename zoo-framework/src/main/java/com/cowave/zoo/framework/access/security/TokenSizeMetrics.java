@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 令牌大小统计
+ * <p/> access/refresh为签发的JWT长度，info为Redis中保存的令牌信息字节数
+ *
+ * @author shanhuiming
+ */
+public class TokenSizeMetrics implements MeterBinder {
+
+    public static final String ACCESS = "access";
+
+    public static final String REFRESH = "refresh";
+
+    public static final String INFO = "info";
+
+    private final Stat access = new Stat();
+
+    private final Stat refresh = new Stat();
+
+    private final Stat info = new Stat();
+
+    public void record(String type, int size) {
+        Stat stat = stat(type);
+        if (stat != null) {
+            stat.record(size);
+        }
+    }
+
+    /**
+     * 平均大小，没有记录时返回0
+     */
+    public double average(String type) {
+        Stat stat = stat(type);
+        return stat == null ? 0 : stat.average();
+    }
+
+    /**
+     * 最大值
+     */
+    public long max(String type) {
+        Stat stat = stat(type);
+        return stat == null ? 0 : stat.max.get();
+    }
+
+    private Stat stat(String type) {
+        return switch (type) {
+            case ACCESS -> access;
+            case REFRESH -> refresh;
+            case INFO -> info;
+            default -> null;
+        };
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bind(registry, ACCESS, access);
+        bind(registry, REFRESH, refresh);
+        bind(registry, INFO, info);
+    }
+
+    private void bind(MeterRegistry registry, String type, Stat stat) {
+        FunctionCounter.builder("access.token.count", stat, s -> s.count.sum())
+                .tag("type", type).description("tokens issued or stored").register(registry);
+        FunctionCounter.builder("access.token.bytes", stat, s -> s.bytes.sum())
+                .tag("type", type).baseUnit("bytes").description("total token size").register(registry);
+        Gauge.builder("access.token.bytes.max", stat, s -> s.max.get())
+                .tag("type", type).baseUnit("bytes").description("max token size").register(registry);
+    }
+
+    private static class Stat {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder bytes = new LongAdder();
+
+        private final AtomicLong max = new AtomicLong();
+
+        void record(int size) {
+            count.increment();
+            bytes.add(size);
+            max.accumulateAndGet(size, Math::max);
+        }
+
+        double average() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) bytes.sum() / n;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 验证通过的accessToken本地缓存
+ * <p/> key为token的SHA-256，缓存到 min(token过期时间, ttl)，命中时跳过验签和服务端校验；
+ * 令牌回收时（revoke、revokeAccessToken等）按用户或者accessId失效，集群内通过Redis广播
+ * <p/> 缓存的是解析后的用户信息模板，每次返回一个副本，调用方修改不会影响缓存
+ *
+ * @author shanhuiming
+ */
+public class VerifiedTokenCache {
+
+    private static final int CLEAN_INTERVAL = 1024;
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong puts = new AtomicLong();
+
+    private final AtomicBoolean cleaning = new AtomicBoolean();
+
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final long ttlMillis;
+
+    private final int maxSize;
+
+    /**
+     * @param ttlSeconds 最长缓存时间（秒）
+     * @param maxSize    最多缓存的token数量
+     */
+    public VerifiedTokenCache(long ttlSeconds, int maxSize) {
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 获取缓存的用户信息（副本），没有或者已过期时返回null
+     */
+    public AccessUserDetails get(String token) {
+        String key = hash(token);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() >= entry.expireAt) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return new AccessUserDetails(entry.userDetails);
+    }
+
+    /**
+     * 校验开始前获取，put时用来判断校验期间是否有令牌被回收
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * 缓存验证通过的用户信息（保存副本）
+     *
+     * @param expiration token过期时间，null表示只按ttl过期
+     * @param stamp      校验开始前的stamp()，校验期间有令牌被回收时不缓存（可能是用回收前的服务端状态校验的）
+     */
+    public void put(String token, AccessUserDetails userDetails, Date expiration, long stamp) {
+        if (stamp != invalidations.get()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expireAt = now + ttlMillis;
+        if (expiration != null) {
+            expireAt = Math.min(expireAt, expiration.getTime());
+        }
+        if (expireAt <= now) {
+            return;
+        }
+        String key = hash(token);
+        AccessUserDetails template = new AccessUserDetails(userDetails);
+        // 每次get返回副本，在模板上编译好，副本直接共享
+        template.precompute();
+        Entry entry = new Entry(template, expireAt);
+        entries.put(key, entry);
+        // 与invalidate并发时，可能没有被遍历到
+        if (stamp != invalidations.get()) {
+            entries.remove(key, entry);
+            return;
+        }
+        if ((puts.incrementAndGet() & (CLEAN_INTERVAL - 1)) == 0 || entries.size() > maxSize) {
+            clean(now);
+        }
+    }
+
+    /**
+     * 失效用户的缓存
+     *
+     * @param accessId 为空时失效该用户的所有token
+     */
+    public void invalidate(String tenantId, String authType, String username, String accessId) {
+        invalidations.incrementAndGet();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            AccessUserDetails userDetails = iterator.next().userDetails;
+            if (Objects.equals(tenantId, userDetails.getTenantId())
+                    && Objects.equals(authType, userDetails.getAuthType())
+                    && Objects.equals(username, userDetails.getUsername())
+                    && (accessId == null || accessId.equals(userDetails.getAccessId()))) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        invalidations.incrementAndGet();
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void clean(long now) {
+        if (!cleaning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            entries.values().removeIf(entry -> now >= entry.expireAt);
+            // 仍然超过上限，丢弃一部分（多丢弃一些，避免频繁清理）
+            int lowWater = maxSize - maxSize / 10;
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (entries.size() > lowWater && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        } finally {
+            cleaning.set(false);
+        }
+    }
+
+    private static String hash(String token) {
+        MessageDigest digest = DIGESTS.get();
+        byte[] bytes = digest.digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private record Entry(AccessUserDetails userDetails, long expireAt) {
+
+    }
+}
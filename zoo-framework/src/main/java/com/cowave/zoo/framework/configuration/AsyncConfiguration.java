@@ -13,6 +13,7 @@
 package com.cowave.zoo.framework.configuration;
 
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.core.task.TaskDecorator;
@@ -28,8 +29,21 @@ import org.springframework.scheduling.annotation.EnableAsync;
 @AutoConfigureBefore(TaskExecutionAutoConfiguration.class)
 public class AsyncConfiguration implements AsyncConfigurer {
 
+    /**
+     * TransmittableThreadLocal传递上下文（默认）
+     */
     @Bean
+    @ConditionalOnProperty(name = "spring.task.execution.context-propagation", havingValue = "ttl", matchIfMissing = true)
     public TaskDecorator myTaskDecorator() {
         return new AsyncTaskDecorator();
     }
+
+    /**
+     * 快照传递上下文，只传递Access和MDC
+     */
+    @Bean
+    @ConditionalOnProperty(name = "spring.task.execution.context-propagation", havingValue = "snapshot")
+    public TaskDecorator snapshotTaskDecorator() {
+        return new SnapshotTaskDecorator();
+    }
 }
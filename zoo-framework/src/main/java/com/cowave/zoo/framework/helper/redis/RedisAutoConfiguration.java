@@ -25,6 +25,7 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -77,6 +78,14 @@ public class RedisAutoConfiguration {
         return StringRedisHelper.newStringRedisHelper(stringRedisTemplate);
     }
 
+    @ConditionalOnMissingBean(RedisMessageListenerContainer.class)
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        return container;
+    }
+
     @ConditionalOnBean(name = "zooRedisConnectionFactory")
     @Bean
     public RedisTemplate<Object, Object> zooRedisTemplate(@Qualifier("zooRedisConnectionFactory") RedisConnectionFactory redisConnectionFactory){
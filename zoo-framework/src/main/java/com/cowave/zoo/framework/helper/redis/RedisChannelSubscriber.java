@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.helper.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.function.Supplier;
+
+/**
+ * 所有单例创建完成后订阅Redis频道
+ * <p/> listener返回null表示不需要订阅；没有RedisMessageListenerContainer时打印警告（其它节点发出的通知将收不到）
+ *
+ * @author shanhuiming
+ */
+@Slf4j
+public class RedisChannelSubscriber implements SmartInitializingSingleton {
+
+    private final ObjectProvider<RedisMessageListenerContainer> listenerContainer;
+
+    private final String channel;
+
+    private final Supplier<MessageListener> listener;
+
+    public RedisChannelSubscriber(ObjectProvider<RedisMessageListenerContainer> listenerContainer,
+                                  String channel, Supplier<MessageListener> listener) {
+        this.listenerContainer = listenerContainer;
+        this.channel = channel;
+        this.listener = listener;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        MessageListener messageListener = listener.get();
+        if (messageListener == null) {
+            return;
+        }
+        RedisMessageListenerContainer container = listenerContainer.getIfAvailable();
+        if (container == null) {
+            log.warn("No RedisMessageListenerContainer, channel {} is not subscribed and notifications from other nodes will be missed", channel);
+            return;
+        }
+        container.addMessageListener(messageListener, new ChannelTopic(channel));
+    }
+}
@@ -29,6 +29,7 @@ import org.springframework.data.redis.connection.stream.*;
 import org.springframework.data.redis.connection.stream.Record;
 import org.springframework.data.redis.core.*;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.data.redis.serializer.RedisSerializer;
 
 import javax.validation.constraints.NotNull;
@@ -191,6 +192,13 @@ public class StringRedisHelper {
         return stringRedisTemplate.execute(luaScript, keys, args);
     }
 
+    /**
+     * 执行脚本，script应该复用，这样会使用EVALSHA（sha1只计算一次），脚本不存在时才会EVAL
+     */
+    public <T> T luaExec(RedisScript<T> script, List<String> keys, Object... args){
+        return stringRedisTemplate.execute(script, keys, args);
+    }
+
     /* ******************************************
      * opsForValue
      * ******************************************/
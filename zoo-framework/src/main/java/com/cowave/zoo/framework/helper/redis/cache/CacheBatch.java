@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.helper.redis.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 批量查询经过缓存：先批量读取L1/L2，未命中的key一次交给loader加载，加载结果批量写回缓存
+ * <pre>
+ * Map&lt;Long, User&gt; users = CacheBatch.getAll(cacheManager, "user", userIds, userMapper::selectMapByIds);
+ * </pre>
+ * 与@Cacheable使用同一个缓存名称时，key需要与@Cacheable的key一致（key.toString()）
+ *
+ * @author shanhuiming
+ */
+public final class CacheBatch {
+
+    private CacheBatch() {
+    }
+
+    /**
+     * @param loader 加载未命中的key，返回中没有的key不缓存
+     * @return 按keys顺序，不包含值为null的key
+     */
+    public static <K, V> Map<K, V> getAll(CacheManager cacheManager, String cacheName,
+                                          Collection<K> keys, Function<Collection<K>, Map<K, V>> loader) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return merge(keys, Collections.emptyMap(), loader.apply(keys));
+        }
+        return getAll(cache, keys, loader);
+    }
+
+    /**
+     * @param loader 加载未命中的key，返回中没有的key不缓存
+     * @return 按keys顺序，不包含值为null的key
+     */
+    public static <K, V> Map<K, V> getAll(Cache cache, Collection<K> keys, Function<Collection<K>, Map<K, V>> loader) {
+        if (keys.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+
+        Map<K, Object> cached;
+        if (cache instanceof RedisCaffeineCache redisCaffeineCache) {
+            cached = redisCaffeineCache.getAll(keys);
+        } else {
+            // 其它Cache逐个读取
+            cached = new HashMap<>();
+            for (K key : keys) {
+                Cache.ValueWrapper wrapper = cache.get(key);
+                if (wrapper != null) {
+                    cached.put(key, wrapper.get());
+                }
+            }
+        }
+
+        List<K> missing = keys.stream().filter(key -> !cached.containsKey(key)).distinct().toList();
+        Map<K, V> loaded = Collections.emptyMap();
+        if (!missing.isEmpty()) {
+            loaded = loader.apply(missing);
+            if (loaded == null) {
+                loaded = Collections.emptyMap();
+            } else if (cache instanceof RedisCaffeineCache redisCaffeineCache) {
+                redisCaffeineCache.putAll(loaded);
+            } else {
+                loaded.forEach((key, value) -> {
+                    if (value != null) {
+                        cache.put(key, value);
+                    }
+                });
+            }
+        }
+        return merge(keys, cached, loaded);
+    }
+
+    private static <K, V> Map<K, V> merge(Collection<K> keys, Map<K, Object> cached, Map<K, V> loaded) {
+        Map<K, V> result = new LinkedHashMap<>();
+        for (K key : keys) {
+            Object value = cached.containsKey(key) ? cached.get(key) : (loaded != null ? loaded.get(key) : null);
+            if (value != null) {
+                result.put(key, (V) value);
+            }
+        }
+        return result;
+    }
+}
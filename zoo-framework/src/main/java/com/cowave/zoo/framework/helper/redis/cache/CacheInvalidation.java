@@ -0,0 +1,46 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.helper.redis.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * L1缓存失效通知，一段时间内的失效合并为一条
+ *
+ * @author shanhuiming
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class CacheInvalidation {
+
+    /**
+     * 发送节点
+     */
+    private String nodeId;
+
+    /**
+     * 缓存名称 -> 失效的key
+     */
+    private Map<String, List<String>> keys;
+
+    /**
+     * 清空的缓存名称
+     */
+    private List<String> clears;
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.helper.redis.cache;
+
+import com.cowave.zoo.framework.helper.redis.RedisHelper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * L1缓存跨节点失效总线（Redis pub/sub）
+ * <p/> put/evict/clear时登记失效，延迟delay毫秒合并发送（登记的key超过batchSize时立即发送），
+ * 其它节点收到后只失效本地缓存；消息带有节点id，忽略自己发出的消息
+ *
+ * @author shanhuiming
+ */
+@Slf4j
+public class CacheInvalidationBus implements MessageListener, DisposableBean {
+
+    public static final String CHANNEL = "cache:l1:invalidate";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final RedisHelper redisHelper;
+
+    private final long delay;
+
+    private final int batchSize;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Object lock = new Object();
+
+    private Map<String, Set<String>> pendingKeys = new HashMap<>();
+
+    private Set<String> pendingClears = new HashSet<>();
+
+    private int pendingCount;
+
+    private boolean scheduled;
+
+    private boolean flushing;
+
+    private volatile RedisCaffeineCacheManager cacheManager;
+
+    /**
+     * @param delay     合并时间，单位毫秒
+     * @param batchSize 单条消息最多包含的key数
+     */
+    public CacheInvalidationBus(RedisHelper redisHelper, long delay, int batchSize) {
+        this.redisHelper = redisHelper;
+        this.delay = Math.max(delay, 0);
+        this.batchSize = Math.max(batchSize, 1);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-invalidation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    void setCacheManager(RedisCaffeineCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    /**
+     * 登记key失效
+     */
+    public void evict(String cacheName, String key) {
+        synchronized (lock) {
+            if (pendingClears.contains(cacheName)) {
+                return;
+            }
+            if (pendingKeys.computeIfAbsent(cacheName, k -> new HashSet<>()).add(key)) {
+                pendingCount++;
+            }
+            schedule();
+        }
+    }
+
+    /**
+     * 登记缓存清空
+     */
+    public void clear(String cacheName) {
+        synchronized (lock) {
+            Set<String> keys = pendingKeys.remove(cacheName);
+            if (keys != null) {
+                pendingCount -= keys.size();
+            }
+            pendingClears.add(cacheName);
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (pendingCount >= batchSize && !flushing) {
+            scheduler.execute(this::flush);
+            flushing = true;
+            scheduled = true;
+        } else if (!scheduled) {
+            scheduler.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+            scheduled = true;
+        }
+    }
+
+    void flush() {
+        Map<String, Set<String>> keys;
+        Set<String> clears;
+        synchronized (lock) {
+            scheduled = false;
+            flushing = false;
+            if (pendingKeys.isEmpty() && pendingClears.isEmpty()) {
+                return;
+            }
+            keys = pendingKeys;
+            clears = pendingClears;
+            pendingKeys = new HashMap<>();
+            pendingClears = new HashSet<>();
+            pendingCount = 0;
+        }
+
+        // 每条消息最多batchSize个key，清空放在第一条消息中
+        List<String> clearList = new ArrayList<>(clears);
+        Map<String, List<String>> message = new HashMap<>();
+        int count = 0;
+        for (Map.Entry<String, Set<String>> entry : keys.entrySet()) {
+            for (String key : entry.getValue()) {
+                message.computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(key);
+                if (++count >= batchSize) {
+                    publish(message, clearList);
+                    message = new HashMap<>();
+                    clearList = new ArrayList<>();
+                    count = 0;
+                }
+            }
+        }
+        if (!message.isEmpty() || !clearList.isEmpty()) {
+            publish(message, clearList);
+        }
+    }
+
+    private void publish(Map<String, List<String>> keys, List<String> clears) {
+        try {
+            redisHelper.sendChannel(CHANNEL, new CacheInvalidation(nodeId, keys, clears));
+        } catch (Exception e) {
+            log.error("Cache invalidation publish failed", e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        RedisCaffeineCacheManager manager = cacheManager;
+        if (manager == null) {
+            return;
+        }
+        Object value;
+        try {
+            value = redisHelper.getValueSerializer().deserialize(message.getBody());
+        } catch (Exception e) {
+            log.error("invalid cache invalidation message", e);
+            return;
+        }
+        if (!(value instanceof CacheInvalidation invalidation) || nodeId.equals(invalidation.getNodeId())) {
+            return;
+        }
+        if (invalidation.getClears() != null) {
+            invalidation.getClears().forEach(manager::localClear);
+        }
+        if (invalidation.getKeys() != null) {
+            invalidation.getKeys().forEach(manager::localEvict);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        flush();
+        scheduler.shutdown();
+    }
+}
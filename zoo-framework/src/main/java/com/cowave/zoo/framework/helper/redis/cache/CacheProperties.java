@@ -52,11 +52,51 @@ public class CacheProperties {
      */
     private int l2ExpireAfterWrite;
 
+    /**
+     * L2分布式加载租约时间，单位毫秒，大于0时get(key, loader)在集群内只有一个节点加载，其它节点等待L2结果
+     */
+    private long l2LoadLease;
+
+    /**
+     * L2写入后刷新时间，单位秒，大于0时get(key, loader)命中的值超过该时间后返回旧值并在后台重新加载
+     */
+    private int l2RefreshAfterWrite;
+
+    /**
+     * 后台刷新线程数
+     */
+    private int refreshThreads = 2;
+
+    /**
+     * 后台刷新最大排队数，超过时放弃刷新
+     */
+    private int refreshQueue = 1000;
+
+    /**
+     * 是否通过Redis通知其它节点失效L1缓存
+     */
+    private boolean l1Broadcast;
+
+    /**
+     * L1失效通知合并时间，单位毫秒
+     */
+    private long l1BroadcastDelay = 10;
+
+    /**
+     * L1失效通知单条消息最多包含的key数
+     */
+    private int l1BroadcastBatch = 500;
+
     /**
      * L1 本地缓存配置
      */
     private L1Properties l1 = new L1Properties();
 
+    /**
+     * L1缓存名称配置，每个缓存名称使用独立的本地缓存，没有配置的使用l1
+     */
+    private Map<String, L1Properties> l1Caches = new HashMap<>();
+
     /**
      * L2缓存Key配置
      */
@@ -86,6 +126,14 @@ public class CacheProperties {
         return l1.maximumSize;
     }
 
+    public L1Properties l1Properties(String cacheName){
+        L1Properties l1Properties = l1Caches.get(cacheName);
+        if(l1Properties != null){
+            return l1Properties;
+        }
+        return l1;
+    }
+
     public boolean l2Enable(Object cacheKey){
         L2Properties l2Properties = l2.get(cacheKey);
         if(l2Properties != null){
@@ -118,6 +166,34 @@ public class CacheProperties {
         return l2ExpireAfterWrite;
     }
 
+    public int l2RefreshAfterWrite(String cacheKey){
+        L2Properties l2Properties = l2.get(cacheKey);
+        if(l2Properties != null){
+            return l2Properties.refreshAfterWrite;
+        }
+        return l2RefreshAfterWrite;
+    }
+
+    /**
+     * 缓存名称的刷新时间，单位毫秒，取启用的L1、L2中较小的刷新时间，不刷新时返回-1
+     */
+    public long refreshAfterWriteMillis(String cacheName){
+        long refresh = -1;
+        if(l1Enable){
+            long l1Refresh = l1Properties(cacheName).refreshAfterWrite;
+            if(l1Refresh > 0){
+                refresh = l1Refresh * 1000;
+            }
+        }
+        if(l2Enable(cacheName)){
+            long l2Refresh = l2RefreshAfterWrite(cacheName);
+            if(l2Refresh > 0 && (refresh < 0 || l2Refresh * 1000 < refresh)){
+                refresh = l2Refresh * 1000;
+            }
+        }
+        return refresh;
+    }
+
     @Data
     public static class L1Properties {
 
@@ -132,7 +208,7 @@ public class CacheProperties {
         private long expireAfterWrite = -1;
 
         /**
-         * 写入后刷新时间，单位秒
+         * 写入后刷新时间，单位秒，超过后get(key, loader)返回旧值并在后台重新加载，应小于expireAfterWrite
          */
         private long refreshAfterWrite = -1;
 
@@ -146,6 +222,10 @@ public class CacheProperties {
          */
         private long maximumSize = -1;
 
+        /**
+         * 最大权重，集合/Map按元素个数计算，其它对象计为1，与maximumSize同时配置时maximumSize优先
+         */
+        private long maximumWeight = -1;
     }
 
     @Data
@@ -170,5 +250,10 @@ public class CacheProperties {
          * 写入后过期时间，单位秒
          */
         private int expireAfterWrite;
+
+        /**
+         * 写入后刷新时间，单位秒
+         */
+        private int refreshAfterWrite;
     }
 }
@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.helper.redis.cache;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.ProxyMethodInvocation;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.interceptor.CacheOperation;
+import org.springframework.cache.interceptor.CacheOperationSource;
+import org.springframework.cache.interceptor.CacheableOperation;
+import org.springframework.util.ObjectUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+
+/**
+ * 记录当前@Cacheable(sync = true)的方法调用，后台刷新时从缓存拦截器的位置重新调用，经过内层的切面（比如@Transactional、数据源路由）
+ * <p/> @Cacheable传入的loader包装的是原始调用的proceed()，原始调用返回后拦截器链已经执行到末尾，再次调用会直接调用目标方法，跳过内层切面；
+ * 所以需要排在缓存拦截器之外（优先级更高），在缓存命中、缓存拦截器还没有proceed时复制调用
+ *
+ * @author shanhuiming
+ */
+public class CacheRefreshInterceptor implements MethodInterceptor {
+
+    private static final ThreadLocal<ProxyMethodInvocation> CURRENT = new ThreadLocal<>();
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        if (!(invocation instanceof ProxyMethodInvocation proxyInvocation)) {
+            return invocation.proceed();
+        }
+        ProxyMethodInvocation previous = CURRENT.get();
+        CURRENT.set(proxyInvocation);
+        try {
+            return invocation.proceed();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 取出当前的方法调用，每次方法调用只能取一次（方法体中手动调用的get(key, loader)取不到外层的方法调用）
+     */
+    static ProxyMethodInvocation take() {
+        ProxyMethodInvocation invocation = CURRENT.get();
+        if (invocation != null) {
+            CURRENT.set(null);
+        }
+        return invocation;
+    }
+
+    /**
+     * 复制方法调用，返回的loader从缓存拦截器之后继续执行拦截器链，必须在缓存拦截器proceed之前复制
+     */
+    static Callable<Object> reinvoker(ProxyMethodInvocation invocation) {
+        MethodInvocation clone = invocation.invocableClone();
+        return () -> {
+            try {
+                // 与@Cacheable一致，Optional返回值缓存其中的值
+                return ObjectUtils.unwrapOptional(clone.proceed());
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new UndeclaredThrowableException(e);
+            }
+        };
+    }
+
+    /**
+     * 只匹配@Cacheable(sync = true)的方法
+     */
+    public static class SyncCacheablePointcut extends StaticMethodMatcherPointcut {
+
+        private final ObjectProvider<CacheOperationSource> cacheOperationSource;
+
+        public SyncCacheablePointcut(ObjectProvider<CacheOperationSource> cacheOperationSource) {
+            this.cacheOperationSource = cacheOperationSource;
+        }
+
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            CacheOperationSource source = cacheOperationSource.getIfAvailable();
+            if (source == null) {
+                return false;
+            }
+            Collection<CacheOperation> operations = source.getCacheOperations(method, targetClass);
+            if (operations == null) {
+                return false;
+            }
+            for (CacheOperation operation : operations) {
+                if (operation instanceof CacheableOperation cacheable && cacheable.isSync()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
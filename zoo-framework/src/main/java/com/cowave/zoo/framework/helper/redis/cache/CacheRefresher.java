@@ -0,0 +1,117 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.helper.redis.cache;
+
+import com.cowave.zoo.framework.access.AccessSnapshot;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存后台刷新，所有缓存名称共用一个有界线程池，队列满时放弃本次刷新（继续返回旧值）
+ * <p/> 刷新耗时以cache.refresh指标暴露，失败与放弃的次数以cache.refresh.failures、cache.refresh.rejected暴露，tag为cache={name}
+ *
+ * @author shanhuiming
+ */
+@Slf4j
+public class CacheRefresher {
+
+    private final Map<String, RefreshStats> stats = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param threads   刷新线程数
+     * @param queueSize 等待刷新的最大任务数
+     */
+    public CacheRefresher(int threads, int queueSize) {
+        int poolSize = Math.max(threads, 1);
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueSize, 1)), r -> {
+                    Thread thread = new Thread(r, "cache-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 提交刷新任务（带上当前线程的访问上下文），队列已满时返回false
+     */
+    boolean submit(String cacheName, Runnable task) {
+        try {
+            executor.execute(AccessSnapshot.wrap(task));
+            return true;
+        } catch (RejectedExecutionException e) {
+            stats(cacheName).rejected.increment();
+            log.warn("Cache refresh rejected, cache={}", cacheName);
+            return false;
+        }
+    }
+
+    RefreshStats stats(String cacheName) {
+        return stats.computeIfAbsent(cacheName, k -> new RefreshStats());
+    }
+
+    void bindTo(MeterRegistry registry, String cacheName) {
+        RefreshStats refreshStats = stats(cacheName);
+        FunctionTimer.builder("cache.refresh", refreshStats,
+                        s -> s.count.sum(), s -> s.totalNanos.sum(), TimeUnit.NANOSECONDS)
+                .tags("cache", cacheName, "cacheManager", "redisCaffeine")
+                .description("The time taken to reload entries in the background")
+                .register(registry);
+        FunctionCounter.builder("cache.refresh.failures", refreshStats, s -> s.failures.sum())
+                .tags("cache", cacheName, "cacheManager", "redisCaffeine")
+                .description("The number of background reloads that failed")
+                .register(registry);
+        FunctionCounter.builder("cache.refresh.rejected", refreshStats, s -> s.rejected.sum())
+                .tags("cache", cacheName, "cacheManager", "redisCaffeine")
+                .description("The number of background reloads dropped because the refresh queue was full")
+                .register(registry);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    static class RefreshStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        void success(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+        }
+
+        void failure(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            failures.increment();
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long failures() {
+            return failures.sum();
+        }
+    }
+}
@@ -15,10 +15,13 @@ package com.cowave.zoo.framework.helper.redis.cache;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -34,26 +37,58 @@ public class CaffeineCache {
 
     private final Cache<Object, Object> cache;
 
+    @Autowired
     public CaffeineCache(CacheProperties cacheProperties) {
+        this(cacheProperties.getL1(), false);
+    }
+
+    private CaffeineCache(CacheProperties.L1Properties l1, boolean recordStats) {
         Caffeine<Object, Object> caffeineBuilder = Caffeine.newBuilder();
-        if(cacheProperties.l1ExpireAfterAccess() > 0){
-            caffeineBuilder.expireAfterAccess(cacheProperties.l1ExpireAfterAccess(), TimeUnit.SECONDS);
+        if(l1.getExpireAfterAccess() > 0){
+            caffeineBuilder.expireAfterAccess(l1.getExpireAfterAccess(), TimeUnit.SECONDS);
         }
-        if(cacheProperties.l1ExpireAfterWrite() > 0){
-            caffeineBuilder.expireAfterWrite(cacheProperties.l1ExpireAfterWrite(), TimeUnit.SECONDS);
+        if(l1.getExpireAfterWrite() > 0){
+            caffeineBuilder.expireAfterWrite(l1.getExpireAfterWrite(), TimeUnit.SECONDS);
         }
-        if(cacheProperties.l1InitialCapacity() > 0){
-            caffeineBuilder.initialCapacity(cacheProperties.l1InitialCapacity());
+        if(l1.getInitialCapacity() > 0){
+            caffeineBuilder.initialCapacity(l1.getInitialCapacity());
         }
-        if(cacheProperties.l1MaximumSize() > 0){
-            caffeineBuilder.maximumSize(cacheProperties.l1MaximumSize());
+        if(l1.getMaximumSize() > 0){
+            caffeineBuilder.maximumSize(l1.getMaximumSize());
+        }else if(l1.getMaximumWeight() > 0){
+            caffeineBuilder.maximumWeight(l1.getMaximumWeight()).weigher(CaffeineCache::weigh);
         }
-        if(cacheProperties.l1RefreshAfterWrite() > 0){
-            caffeineBuilder.refreshAfterWrite(cacheProperties.l1RefreshAfterWrite(), TimeUnit.SECONDS);
+        // refreshAfterWrite需要LoadingCache，由RedisCaffeineCache重新调用@Cacheable方法刷新
+        if(recordStats){
+            caffeineBuilder.recordStats();
         }
         this.cache = caffeineBuilder.build();
     }
 
+    /**
+     * 创建某个缓存名称独立使用的本地缓存（记录命中统计）
+     */
+    public static CaffeineCache of(CacheProperties.L1Properties l1) {
+        return new CaffeineCache(l1, true);
+    }
+
+    private static int weigh(Object key, Object value) {
+        if(value instanceof Collection<?> collection){
+            return collection.size() + 1;
+        }
+        if(value instanceof Map<?, ?> map){
+            return map.size() + 1;
+        }
+        return 1;
+    }
+
+    /**
+     * Caffeine原生缓存
+     */
+    public Cache<Object, Object> getNativeCache() {
+        return cache;
+    }
+
     public Object get(Object key){
         Object value = cache.getIfPresent(key);
         log.debug("Cache caffeine get, {}={}", key, value);
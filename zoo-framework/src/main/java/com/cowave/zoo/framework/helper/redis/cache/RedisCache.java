@@ -18,9 +18,13 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
+import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  *
@@ -34,6 +38,23 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class RedisCache {
 
+    /**
+     * 加载租约使用独立的命名空间（{LEASE_PREFIX}{cacheName}:{key}），不会与缓存key冲突，也不会被clear删除
+     */
+    private static final String LEASE_PREFIX = "cache-lease:";
+
+    /**
+     * 批量读写时单次MGET/pipeline的最大key数
+     */
+    private static final int MULTI_BATCH = 500;
+
+    private static final RedisScript<Long> LUA_RELEASE = RedisScript.of("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
     private final CacheProperties cacheProperties;
 
     private final RedisHelper redisHelper;
@@ -44,11 +65,15 @@ public class RedisCache {
         String redisKey = cacheName + ":" + key.toString();
         Object value = null;
         try{
-            value = redisHelper.getValue(redisKey);
             int expireAfterAccess = cacheProperties.l2ExpireAfterAccess(cacheName);
-            // 重置缓存时间
-            if(value != null && expireAfterAccess > 0){
-                redisHelper.expire(redisKey, expireAfterAccess, TimeUnit.SECONDS);
+            if(expireAfterAccess > 0){
+                // GET与重置缓存时间在一次往返内完成（key不存在时EXPIRE无影响）
+                List<Consumer<RedisOperations<String, Object>>> operations = List.of(
+                        ops -> ops.opsForValue().get(redisKey),
+                        ops -> ops.expire(redisKey, expireAfterAccess, TimeUnit.SECONDS));
+                value = redisHelper.pipeline(operations).get(0);
+            }else{
+                value = redisHelper.getValue(redisKey);
             }
             log.debug("Cache redis get, {}={}", redisKey, value);
         }catch (Exception e){
@@ -57,6 +82,48 @@ public class RedisCache {
         return value;
     }
 
+    /**
+     * 批量获取（MGET，配置了访问后过期时在同一个pipeline中重置缓存时间），只返回命中的key
+     */
+    public <K> Map<K, Object> getAll(String cacheName, Collection<K> keys){
+        Map<K, Object> result = new HashMap<>();
+        if(keys.isEmpty()){
+            return result;
+        }
+        int expireAfterAccess = cacheProperties.l2ExpireAfterAccess(cacheName);
+        List<K> keyList = new ArrayList<>(keys);
+        for(int from = 0; from < keyList.size(); from += MULTI_BATCH){
+            List<K> batch = keyList.subList(from, Math.min(from + MULTI_BATCH, keyList.size()));
+            List<String> redisKeys = batch.stream().map(key -> cacheName + ":" + key.toString()).toList();
+            try{
+                List<Object> values;
+                if(expireAfterAccess > 0){
+                    List<Consumer<RedisOperations<String, Object>>> operations = new ArrayList<>(redisKeys.size() + 1);
+                    operations.add(ops -> ops.opsForValue().multiGet(redisKeys));
+                    for(String redisKey : redisKeys){
+                        operations.add(ops -> ops.expire(redisKey, expireAfterAccess, TimeUnit.SECONDS));
+                    }
+                    values = (List<Object>) redisHelper.pipeline(operations).get(0);
+                }else{
+                    values = redisHelper.getMultiValue(redisKeys);
+                }
+                if(values == null){
+                    continue;
+                }
+                for(int i = 0; i < batch.size(); i++){
+                    Object value = values.get(i);
+                    if(value != null){
+                        result.put(batch.get(i), value);
+                    }
+                }
+                log.debug("Cache redis multi get, {}:{} keys, {} hits", cacheName, batch.size(), result.size());
+            }catch (Exception e){
+                log.error("Cache redis multi get failed, {}", cacheName, e);
+            }
+        }
+        return result;
+    }
+
     public void put(String cacheName, Object key, Object value){
         String redisKey = cacheName + ":" + key.toString();
         int expireAfterWrite = cacheProperties.l2ExpireAfterWrite(cacheName);
@@ -72,6 +139,33 @@ public class RedisCache {
         }
     }
 
+    /**
+     * 批量写入（配置了写入后过期时为pipeline SET EX，否则为MSET）
+     */
+    public void putAll(String cacheName, Map<?, ?> values){
+        if(values.isEmpty()){
+            return;
+        }
+        int expireAfterWrite = cacheProperties.l2ExpireAfterWrite(cacheName);
+        List<Map.Entry<?, ?>> entries = new ArrayList<>(values.entrySet());
+        for(int from = 0; from < entries.size(); from += MULTI_BATCH){
+            Map<String, Object> batch = new HashMap<>();
+            for(Map.Entry<?, ?> entry : entries.subList(from, Math.min(from + MULTI_BATCH, entries.size()))){
+                batch.put(cacheName + ":" + entry.getKey().toString(), entry.getValue());
+            }
+            try{
+                if (expireAfterWrite > 0) {
+                    redisHelper.putMultiExpire(batch, expireAfterWrite, TimeUnit.SECONDS);
+                } else {
+                    redisHelper.putMultiValue(batch);
+                }
+                log.debug("Cache redis multi put, {}:{} keys", cacheName, batch.size());
+            }catch(Exception e){
+                log.error("Cache redis multi put failed, {}", cacheName, e);
+            }
+        }
+    }
+
     public void evict(String cacheName, Object key) {
         redisHelper.delete(cacheName + ":" + key.toString());
     }
@@ -79,4 +173,34 @@ public class RedisCache {
     public void clear(String cacheName) {
         stringRedisHelper.luaClean(cacheName + ":*");
     }
+
+    /**
+     * 尝试获取加载租约（SET NX PX），获取成功的节点负责加载，Redis异常时视为获取成功
+     */
+    public boolean tryLease(String cacheName, Object key, String token, long leaseMillis) {
+        String leaseKey = leaseKey(cacheName, key);
+        try {
+            return Boolean.TRUE.equals(stringRedisHelper.getRedisTemplate().opsForValue()
+                    .setIfAbsent(leaseKey, token, leaseMillis, TimeUnit.MILLISECONDS));
+        } catch (Exception e) {
+            log.error("Cache redis lease failed, {}", leaseKey, e);
+            return true;
+        }
+    }
+
+    private static String leaseKey(String cacheName, Object key) {
+        return LEASE_PREFIX + cacheName + ":" + key.toString();
+    }
+
+    /**
+     * 释放自己持有的加载租约
+     */
+    public void releaseLease(String cacheName, Object key, String token) {
+        String leaseKey = leaseKey(cacheName, key);
+        try {
+            stringRedisHelper.luaExec(LUA_RELEASE, List.of(leaseKey), token);
+        } catch (Exception e) {
+            log.error("Cache redis lease release failed, {}", leaseKey, e);
+        }
+    }
 }
@@ -12,13 +12,18 @@
  */
 package com.cowave.zoo.framework.helper.redis.cache;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.ProxyMethodInvocation;
 import org.springframework.cache.support.AbstractValueAdaptingCache;
 
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  *
@@ -27,19 +32,52 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 @Slf4j
 public class RedisCaffeineCache extends AbstractValueAdaptingCache {
-    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private static final long LEASE_POLL_MILLIS = 50;
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    /**
+     * 每次写入或失效时递增，用来判断读取L2期间是否发生了失效
+     */
+    private final AtomicLong generation = new AtomicLong();
     private final String cacheName;
     private final CacheProperties cacheProperties;
     private final CaffeineCache caffeineCache;
     private final RedisCache redisCache;
+    private final CacheInvalidationBus invalidationBus;
+    private final CacheRefresher refresher;
+    private final long refreshMillis;
+    /**
+     * key -> 下次刷新时间，只在本节点记录，从L2或其它节点得到的值第一次命中时开始计时
+     */
+    private final Cache<String, Long> refreshTimes;
 
     protected RedisCaffeineCache(String cacheName, CacheProperties cacheProperties,
                                  CaffeineCache caffeineCache, RedisCache redisCache) {
+        this(cacheName, cacheProperties, caffeineCache, redisCache, null, null);
+    }
+
+    /**
+     * @param invalidationBus 不为null时put/evict/clear通知其它节点失效L1
+     * @param refresher 不为null并且配置了刷新时间时，get(key, loader)命中的旧值在后台重新加载
+     */
+    protected RedisCaffeineCache(String cacheName, CacheProperties cacheProperties, CaffeineCache caffeineCache,
+                                 RedisCache redisCache, CacheInvalidationBus invalidationBus, CacheRefresher refresher) {
         super(true);
         this.cacheName = cacheName;
         this.cacheProperties = cacheProperties;
         this.caffeineCache = caffeineCache;
         this.redisCache = redisCache;
+        this.invalidationBus = invalidationBus;
+        this.refreshMillis = cacheProperties.refreshAfterWriteMillis(cacheName);
+        if(refresher != null && refreshMillis > 0){
+            long maximumSize = cacheProperties.l1Properties(cacheName).getMaximumSize();
+            this.refresher = refresher;
+            this.refreshTimes = Caffeine.newBuilder()
+                    .maximumSize(maximumSize > 0 ? maximumSize : 10000)
+                    .build();
+        }else{
+            this.refresher = null;
+            this.refreshTimes = null;
+        }
     }
 
     @Override
@@ -52,35 +90,203 @@ public class RedisCaffeineCache extends AbstractValueAdaptingCache {
         return this;
     }
 
+    /**
+     * 当前缓存名称独立使用的本地缓存，未启用时为null
+     */
+    CaffeineCache getCaffeineCache() {
+        return caffeineCache;
+    }
+
+    /**
+     * 同一个key同时只有一个线程加载，其它线程等待加载结果；加载完成后移除，不会随key数量增长。
+     * 配置了spring.cache.l2-load-lease时，通过Redis租约使集群内只有一个节点加载，其它节点轮询L2，
+     * 租约到期仍没有结果时自己加载
+     */
     @Override
     public <T> T get(Object key, Callable<T> valueLoader) {
+        // 未命中时也要取出，避免方法体中手动调用的get(key, loader)拿到外层的方法调用
+        ProxyMethodInvocation invocation = refreshTimes != null ? CacheRefreshInterceptor.take() : null;
         Object value = lookup(key);
         if (value != null) {
+            // 缓存的null值（NullValue）也算命中
+            value = fromStoreValue(value);
+            refreshIfDue(key, value, valueLoader, invocation);
             return (T) value;
         }
 
-        ReentrantLock lock = locks.get(key.toString());
-        if (lock == null) {
-            lock = locks.computeIfAbsent(key.toString(), k -> new ReentrantLock());
+        String loadKey = key.toString();
+        Flight flight = new Flight();
+        Flight existing = flights.putIfAbsent(loadKey, flight);
+        if (existing != null) {
+            // 加载过程中重入同一个key，直接加载
+            if (existing.owner == Thread.currentThread()) {
+                return load(key, valueLoader);
+            }
+            return await(key, valueLoader, existing);
         }
         try {
-            lock.lock();
             value = lookup(key);
             if (value != null) {
-                return (T) value;
+                value = fromStoreValue(value);
+            } else {
+                value = load(key, valueLoader);
+            }
+            flight.future.complete(value);
+            return (T) value;
+        } catch (Throwable e) {
+            flight.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(loadKey, flight);
+        }
+    }
+
+    private <T> T await(Object key, Callable<T> valueLoader, Flight flight) {
+        try {
+            return (T) flight.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        }
+    }
+
+    private <T> T load(Object key, Callable<T> valueLoader) {
+        long leaseMillis = cacheProperties.getL2LoadLease();
+        if (leaseMillis <= 0 || redisCache == null || !cacheProperties.l2Enable(cacheName)) {
+            return loadAndPut(key, valueLoader);
+        }
+
+        String token = UUID.randomUUID().toString();
+        long deadline = System.currentTimeMillis() + leaseMillis;
+        while (!redisCache.tryLease(cacheName, key, token, leaseMillis)) {
+            // 其它节点正在加载，等待其写入L2（加载结果为null时写入的是NullValue，同样算命中）
+            long readGeneration = generation.get();
+            Object value = redisGet(key);
+            if (value != null) {
+                if (cacheProperties.l1Enable()) {
+                    localFill(key, value, readGeneration);
+                }
+                return (T) fromStoreValue(value);
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return loadAndPut(key, valueLoader);
+            }
+            try {
+                Thread.sleep(Math.min(LEASE_POLL_MILLIS, Math.max(leaseMillis / 10, 1)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+        }
+        try {
+            // 拿到租约时其它节点可能刚刚写入
+            long readGeneration = generation.get();
+            Object value = redisGet(key);
+            if (value != null) {
+                if (cacheProperties.l1Enable()) {
+                    localFill(key, value, readGeneration);
+                }
+                return (T) fromStoreValue(value);
             }
+            return loadAndPut(key, valueLoader);
+        } finally {
+            redisCache.releaseLease(cacheName, key, token);
+        }
+    }
 
+    private <T> T loadAndPut(Object key, Callable<T> valueLoader) {
+        T value;
+        try {
             value = valueLoader.call();
-            Object storeValue = toStoreValue(value);
-            put(key, storeValue);
-            return (T) value;
         } catch (Exception e) {
-            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        put(key, toStoreValue(value));
+        return value;
+    }
+
+    /**
+     * 命中的值超过刷新时间时，先返回旧值，后台重新加载并写入L1、L2；刷新与同一个key的加载共用单飞，刷新失败时旧值继续使用到过期
+     * <p/> 有{@link CacheRefreshInterceptor}记录的方法调用时，从缓存拦截器之后重新调用（经过内层切面）；
+     * 否则使用传入的loader（@Cacheable的loader再次调用时会跳过内层切面）
+     */
+    private void refreshIfDue(Object key, Object staleValue, Callable<?> valueLoader, ProxyMethodInvocation invocation) {
+        if (refreshTimes == null) {
+            return;
+        }
+        String refreshKey = key.toString();
+        long now = System.currentTimeMillis();
+        Long due = refreshTimes.getIfPresent(refreshKey);
+        if (due == null) {
+            refreshTimes.put(refreshKey, now + refreshMillis);
+            return;
+        }
+        if (now < due || flights.containsKey(refreshKey)) {
+            return;
+        }
+
+        Flight flight = new Flight();
+        if (flights.putIfAbsent(refreshKey, flight) != null) {
+            return;
+        }
+        // 刷新期间不再重复提交
+        refreshTimes.put(refreshKey, now + refreshMillis);
+        Callable<?> reloader = invocation != null ? CacheRefreshInterceptor.reinvoker(invocation) : valueLoader;
+        boolean submitted = refresher.submit(cacheName, () -> refresh(key, staleValue, reloader, flight));
+        if (!submitted) {
+            flights.remove(refreshKey, flight);
+            flight.future.complete(staleValue);
+        }
+    }
+
+    private void refresh(Object key, Object staleValue, Callable<?> valueLoader, Flight flight) {
+        flight.owner = Thread.currentThread();
+        CacheRefresher.RefreshStats stats = refresher.stats(cacheName);
+        long start = System.nanoTime();
+        String token = null;
+        try {
+            if (cacheProperties.getL2LoadLease() > 0 && redisCache != null && cacheProperties.l2Enable(cacheName)) {
+                token = UUID.randomUUID().toString();
+                if (!redisCache.tryLease(cacheName, key, token, cacheProperties.getL2LoadLease())) {
+                    // 其它节点正在刷新
+                    token = null;
+                    flight.future.complete(staleValue);
+                    return;
+                }
+            }
+            Object value = loadAndPut(key, valueLoader);
+            stats.success(System.nanoTime() - start);
+            flight.future.complete(value);
+        } catch (Throwable e) {
+            stats.failure(System.nanoTime() - start);
+            log.warn("Cache refresh failed, cache={}, key={}", cacheName, key, e);
+            flight.future.completeExceptionally(e);
         } finally {
-            lock.unlock();
+            if (token != null) {
+                redisCache.releaseLease(cacheName, key, token);
+            }
+            flights.remove(key.toString(), flight);
         }
     }
 
+    /**
+     * 进行中的加载数，用于检查
+     */
+    int flightCount() {
+        return flights.size();
+    }
+
+    private static class Flight {
+        // 后台刷新时为刷新线程
+        private volatile Thread owner = Thread.currentThread();
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+    }
+
     @Override
     protected Object lookup(Object key) {
         // 不缓存
@@ -130,24 +336,66 @@ public class RedisCaffeineCache extends AbstractValueAdaptingCache {
         }
 
         // L1获取失败，L2获取
+        long readGeneration = generation.get();
         value = redisGet(key);
         // L2同步到L1
         if (value != null) {
-            localPut(key, toStoreValue(value));
+            localFill(key, value, readGeneration);
         }
         return value;
     }
 
+    // L1与L2一样以key.toString()作为key，这样其它节点可以按通知中的key失效
     private Object localGet(Object key){
         if(caffeineCache != null){
-            return caffeineCache.get(key);
+            return caffeineCache.get(key.toString());
         }
         return null;
     }
 
     private void localPut(Object key, Object value){
         if(caffeineCache != null){
-            caffeineCache.put(key, toStoreValue(value));
+            caffeineCache.put(key.toString(), toStoreValue(value));
+        }
+    }
+
+    /**
+     * 从L2读到的值写入L1；读取L2期间发生过失效（本节点写入或其它节点的通知）时不写入，避免旧值留在L1直到过期
+     */
+    private void localFill(Object key, Object value, long readGeneration){
+        if(caffeineCache == null || generation.get() != readGeneration){
+            return;
+        }
+        caffeineCache.put(key.toString(), toStoreValue(value));
+        // 写入期间发生了失效
+        if(generation.get() != readGeneration){
+            caffeineCache.evict(key.toString());
+        }
+    }
+
+    /**
+     * 只失效本地缓存（其它节点的通知）
+     */
+    void localEvict(Collection<String> keys){
+        generation.incrementAndGet();
+        if(refreshTimes != null){
+            refreshTimes.invalidateAll(keys);
+        }
+        if(caffeineCache != null){
+            keys.forEach(caffeineCache::evict);
+        }
+    }
+
+    /**
+     * 只清空本地缓存（其它节点的通知）
+     */
+    void localClear(){
+        generation.incrementAndGet();
+        if(refreshTimes != null){
+            refreshTimes.invalidateAll();
+        }
+        if(caffeineCache != null){
+            caffeineCache.clear();
         }
     }
 
@@ -164,36 +412,144 @@ public class RedisCaffeineCache extends AbstractValueAdaptingCache {
         }
     }
 
+    /**
+     * 批量获取，L1按key读取，L2使用MGET，未命中L1的L2结果批量写入L1；只返回命中的key（缓存的null值为null）
+     */
+    public <K> Map<K, Object> getAll(Collection<K> keys) {
+        Map<K, Object> result = new LinkedHashMap<>();
+        boolean l1 = cacheProperties.l1Enable() && caffeineCache != null;
+        boolean l2 = cacheProperties.l2Enable(cacheName) && redisCache != null;
+        if (keys.isEmpty() || (!l1 && !l2)) {
+            return result;
+        }
+
+        Map<K, Object> stored = new HashMap<>();
+        if (l1 && l2 && cacheProperties.l2First(cacheName)) {
+            // L2优先，L2没有的从L1获取并同步到L2
+            stored.putAll(redisCache.getAll(cacheName, keys));
+            Map<K, Object> localHits = localGetAll(missing(keys, stored));
+            if (!localHits.isEmpty()) {
+                redisCache.putAll(cacheName, localHits);
+                stored.putAll(localHits);
+            }
+        } else {
+            if (l1) {
+                stored.putAll(localGetAll(keys));
+            }
+            if (l2) {
+                long readGeneration = generation.get();
+                Map<K, Object> redisHits = redisCache.getAll(cacheName, missing(keys, stored));
+                // L2同步到L1
+                if (l1) {
+                    redisHits.forEach((key, value) -> localFill(key, value, readGeneration));
+                }
+                stored.putAll(redisHits);
+            }
+        }
+        for (K key : keys) {
+            if (stored.containsKey(key)) {
+                result.put(key, fromStoreValue(stored.get(key)));
+            }
+        }
+        return result;
+    }
+
+    private <K> Map<K, Object> localGetAll(Collection<K> keys) {
+        Map<K, Object> hits = new HashMap<>();
+        for (K key : keys) {
+            Object value = localGet(key);
+            if (value != null) {
+                hits.put(key, value);
+            }
+        }
+        return hits;
+    }
+
+    private static <K> List<K> missing(Collection<K> keys, Map<K, Object> stored) {
+        return keys.stream().filter(key -> !stored.containsKey(key)).distinct().toList();
+    }
+
+    /**
+     * 批量写入，L2使用一次MSET或pipeline，null值忽略（与put一致）
+     */
+    public void putAll(Map<?, ?> values) {
+        Map<Object, Object> stored = new HashMap<>();
+        values.forEach((key, value) -> {
+            if (value != null) {
+                stored.put(key, toStoreValue(value));
+            }
+        });
+        if (stored.isEmpty()) {
+            return;
+        }
+        if (cacheProperties.l2Enable(cacheName) && redisCache != null) {
+            redisCache.putAll(cacheName, stored);
+        }
+        if (refreshTimes != null) {
+            long due = System.currentTimeMillis() + refreshMillis;
+            stored.keySet().forEach(key -> refreshTimes.put(key.toString(), due));
+        }
+        generation.incrementAndGet();
+        if (cacheProperties.l1Enable()) {
+            stored.forEach(this::localPut);
+            if (invalidationBus != null && caffeineCache != null) {
+                stored.keySet().forEach(key -> invalidationBus.evict(cacheName, key.toString()));
+            }
+        }
+    }
+
     @Override
     public void put(Object key, Object value) {
         if(value == null){
           return;
         }
-        if (cacheProperties.l1Enable()){
-            localPut(key, value);
-        }
         if(cacheProperties.l2Enable(cacheName)){
             redisPut(key, value);
         }
+        if(refreshTimes != null){
+            refreshTimes.put(key.toString(), System.currentTimeMillis() + refreshMillis);
+        }
+        // 之前读到的L2旧值不再写入L1
+        generation.incrementAndGet();
+        if (cacheProperties.l1Enable()){
+            localPut(key, value);
+            if(invalidationBus != null && caffeineCache != null){
+                invalidationBus.evict(cacheName, key.toString());
+            }
+        }
     }
 
     @Override
     public void evict(Object key) {
+        if(refreshTimes != null){
+            refreshTimes.invalidate(key.toString());
+        }
         if(cacheProperties.l2Enable(cacheName) && redisCache != null){
             redisCache.evict(cacheName, key);
         }
+        generation.incrementAndGet();
         if(cacheProperties.l1Enable() && caffeineCache != null){
-            caffeineCache.evict(key);
+            caffeineCache.evict(key.toString());
+            if(invalidationBus != null){
+                invalidationBus.evict(cacheName, key.toString());
+            }
         }
     }
 
     @Override
     public void clear() {
+        if(refreshTimes != null){
+            refreshTimes.invalidateAll();
+        }
         if(cacheProperties.l2Enable(cacheName) && redisCache != null){
             redisCache.clear(cacheName);
         }
+        generation.incrementAndGet();
         if(cacheProperties.l1Enable() && caffeineCache != null){
             caffeineCache.clear();
+            if(invalidationBus != null){
+                invalidationBus.clear(cacheName);
+            }
         }
     }
 }
@@ -12,13 +12,26 @@
  */
 package com.cowave.zoo.framework.helper.redis.cache;
 
+import com.cowave.zoo.framework.helper.redis.RedisChannelSubscriber;
+import com.cowave.zoo.framework.helper.redis.RedisHelper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.interceptor.CacheOperationSource;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
 import javax.annotation.Nullable;
 
@@ -40,7 +53,51 @@ public class RedisCaffeineCacheConfiguration {
 
     @ConditionalOnMissingBean(CacheManager.class)
     @Bean
-    public RedisCaffeineCacheManager cacheManager() {
-        return new RedisCaffeineCacheManager(cacheProperties, caffeineCache, redisCache);
+    public RedisCaffeineCacheManager cacheManager(ObjectProvider<CacheInvalidationBus> invalidationBus,
+                                                  CacheRefresher cacheRefresher) {
+        return new RedisCaffeineCacheManager(cacheProperties, caffeineCache, redisCache,
+                invalidationBus.getIfAvailable(), cacheRefresher);
+    }
+
+    /**
+     * 缓存后台刷新，线程按需创建
+     */
+    @ConditionalOnMissingBean(CacheRefresher.class)
+    @Bean(destroyMethod = "shutdown")
+    public CacheRefresher cacheRefresher() {
+        return new CacheRefresher(cacheProperties.getRefreshThreads(), cacheProperties.getRefreshQueue());
+    }
+
+    /**
+     * 记录@Cacheable(sync = true)的方法调用，后台刷新时经过缓存拦截器内层的切面，排在缓存拦截器之外
+     */
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    @Bean
+    public static Advisor cacheRefreshAdvisor(ObjectProvider<CacheOperationSource> cacheOperationSource) {
+        DefaultPointcutAdvisor advisor = new DefaultPointcutAdvisor(
+                new CacheRefreshInterceptor.SyncCacheablePointcut(cacheOperationSource), new CacheRefreshInterceptor());
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+
+    /**
+     * L1缓存跨节点失效
+     */
+    @ConditionalOnProperty(name = "spring.cache.l1-broadcast", havingValue = "true")
+    @ConditionalOnClass(name = "org.springframework.data.redis.listener.RedisMessageListenerContainer")
+    @Configuration
+    static class CacheInvalidationConfiguration {
+
+        @Bean
+        public CacheInvalidationBus cacheInvalidationBus(CacheProperties cacheProperties, RedisHelper redisHelper) {
+            return new CacheInvalidationBus(redisHelper,
+                    cacheProperties.getL1BroadcastDelay(), cacheProperties.getL1BroadcastBatch());
+        }
+
+        @Bean
+        public SmartInitializingSingleton cacheInvalidationSubscriber(CacheInvalidationBus cacheInvalidationBus,
+                ObjectProvider<RedisMessageListenerContainer> listenerContainer) {
+            return new RedisChannelSubscriber(listenerContainer, CacheInvalidationBus.CHANNEL, () -> cacheInvalidationBus);
+        }
     }
 }
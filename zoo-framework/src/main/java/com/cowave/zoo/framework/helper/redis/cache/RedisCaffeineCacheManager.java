@@ -12,7 +12,9 @@
  */
 package com.cowave.zoo.framework.helper.redis.cache;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 
@@ -21,16 +23,50 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 /**
+ * 每个缓存名称使用独立的本地缓存（spring.cache.l1-caches.{name}，默认spring.cache.l1），
+ * 命中、未命中、淘汰等统计以cache.*指标暴露，tag为cache={name}；后台刷新的耗时与失败以cache.refresh*指标暴露
  *
  * @author shanhuiming
  *
  */
-@RequiredArgsConstructor
-public class RedisCaffeineCacheManager implements CacheManager {
-    private final ConcurrentMap<String, Cache> caches = new ConcurrentHashMap<>();
+public class RedisCaffeineCacheManager implements CacheManager, MeterBinder {
+    private final ConcurrentMap<String, RedisCaffeineCache> caches = new ConcurrentHashMap<>();
     private final CacheProperties cacheProperties;
+    /**
+     * 不为null表示可以使用本地缓存
+     */
     private final CaffeineCache caffeineCache;
     private final RedisCache redisCache;
+    private final CacheInvalidationBus invalidationBus;
+    private final CacheRefresher refresher;
+    private volatile MeterRegistry meterRegistry;
+
+    public RedisCaffeineCacheManager(CacheProperties cacheProperties, CaffeineCache caffeineCache, RedisCache redisCache) {
+        this(cacheProperties, caffeineCache, redisCache, null);
+    }
+
+    /**
+     * @param invalidationBus 不为null时本地缓存的变更通知其它节点
+     */
+    public RedisCaffeineCacheManager(CacheProperties cacheProperties, CaffeineCache caffeineCache,
+                                     RedisCache redisCache, CacheInvalidationBus invalidationBus) {
+        this(cacheProperties, caffeineCache, redisCache, invalidationBus, null);
+    }
+
+    /**
+     * @param refresher 不为null时按spring.cache.l1.refresh-after-write、spring.cache.l2-refresh-after-write后台刷新
+     */
+    public RedisCaffeineCacheManager(CacheProperties cacheProperties, CaffeineCache caffeineCache,
+                                     RedisCache redisCache, CacheInvalidationBus invalidationBus, CacheRefresher refresher) {
+        this.cacheProperties = cacheProperties;
+        this.caffeineCache = caffeineCache;
+        this.redisCache = redisCache;
+        this.invalidationBus = invalidationBus;
+        this.refresher = refresher;
+        if(invalidationBus != null){
+            invalidationBus.setCacheManager(this);
+        }
+    }
 
     @Override
     public Collection<String> getCacheNames() {
@@ -43,7 +79,56 @@ public class RedisCaffeineCacheManager implements CacheManager {
         if(cache != null) {
             return cache;
         }
-        return caches.computeIfAbsent(cacheName,
-                k -> new RedisCaffeineCache(cacheName, cacheProperties, caffeineCache, redisCache));
+        return caches.computeIfAbsent(cacheName, this::newCache);
+    }
+
+    private RedisCaffeineCache newCache(String cacheName) {
+        CaffeineCache localCache = null;
+        if(caffeineCache != null && cacheProperties.l1Enable()){
+            localCache = CaffeineCache.of(cacheProperties.l1Properties(cacheName));
+        }
+        RedisCaffeineCache cache = new RedisCaffeineCache(cacheName, cacheProperties, localCache, redisCache,
+                localCache != null ? invalidationBus : null, refresher);
+        MeterRegistry registry = meterRegistry;
+        if(registry != null){
+            bindCache(registry, cacheName, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * 其它节点通知的key失效，本节点还没有创建的缓存不需要处理
+     */
+    void localEvict(String cacheName, Collection<String> keys) {
+        RedisCaffeineCache cache = caches.get(cacheName);
+        if(cache != null){
+            cache.localEvict(keys);
+        }
+    }
+
+    /**
+     * 其它节点通知的缓存清空
+     */
+    void localClear(String cacheName) {
+        RedisCaffeineCache cache = caches.get(cacheName);
+        if(cache != null){
+            cache.localClear();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.meterRegistry = registry;
+        caches.forEach((name, cache) -> bindCache(registry, name, cache));
+    }
+
+    private void bindCache(MeterRegistry registry, String cacheName, RedisCaffeineCache cache) {
+        CaffeineCache localCache = cache.getCaffeineCache();
+        if(localCache != null){
+            CaffeineCacheMetrics.monitor(registry, localCache.getNativeCache(), cacheName, "cacheManager", "redisCaffeine");
+        }
+        if(refresher != null && cacheProperties.refreshAfterWriteMillis(cacheName) > 0){
+            refresher.bindTo(registry, cacheName);
+        }
     }
 }
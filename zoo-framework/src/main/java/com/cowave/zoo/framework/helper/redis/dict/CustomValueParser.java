@@ -16,6 +16,7 @@ import com.cowave.zoo.http.client.asserts.HttpHintException;
 import com.cowave.zoo.tools.DateUtils;
 
 import java.math.BigDecimal;
+import java.util.Date;
 
 import static com.cowave.zoo.http.client.constants.HttpCode.BAD_REQUEST;
 
@@ -32,28 +33,34 @@ public interface CustomValueParser<T> {
         if(valueType == null || value == null) {
             return value;
         }
+        // 已经是目标类型的不再经过字符串转换
         return switch (valueType) {
-            case "int32" -> Integer.valueOf(String.valueOf(value));
-            case "int64" -> Long.valueOf(String.valueOf(value));
-            case "bool" -> Boolean.valueOf(String.valueOf(value));
-            case "float" -> Float.valueOf(String.valueOf(value));
-            case "double" -> Double.valueOf(String.valueOf(value));
-            case "decimal" -> new BigDecimal(String.valueOf(value));
-            case "datetime" -> DateUtils.parse(String.valueOf(value));
+            case "int32" -> value instanceof Integer ? value : Integer.valueOf(String.valueOf(value));
+            case "int64" -> value instanceof Long || value instanceof Integer
+                    ? Long.valueOf(((Number) value).longValue()) : Long.valueOf(String.valueOf(value));
+            case "bool" -> value instanceof Boolean ? value : Boolean.valueOf(String.valueOf(value));
+            case "float" -> value instanceof Float ? value : Float.valueOf(String.valueOf(value));
+            case "double" -> value instanceof Double ? value : Double.valueOf(String.valueOf(value));
+            case "decimal" -> value instanceof BigDecimal ? value : new BigDecimal(String.valueOf(value));
+            case "datetime" -> value instanceof Date ? value : DateUtils.parse(String.valueOf(value));
             case "custom" -> getCustomValue(value, valueParser);
             default -> value;
         };
     }
 
+    /**
+     * 每次按类名反射创建转换器，需要缓存或者引用Spring容器中的转换器时使用{@link DictHelper#getValueParsers()}
+     */
     static Object getCustomValue(Object value, String valueParser){
         if(valueParser == null) {
             return null;
         }
+        CustomValueParser<?> parser;
         try {
-            CustomValueParser parser = (CustomValueParser) Class.forName(valueParser).getDeclaredConstructor().newInstance();
-            return parser.parse(value);
-        } catch (Exception e) {
-            throw new HttpHintException(BAD_REQUEST, "{frame.parse.failed}", value);
+            parser = CustomValueParsers.newInstance(valueParser);
+        } catch (IllegalArgumentException e) {
+            throw new HttpHintException(BAD_REQUEST, "{frame.parse.failed}", valueParser);
         }
+        return CustomValueParsers.parse(parser, value);
     }
 }
@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.helper.redis.dict;
+
+import com.cowave.zoo.http.client.asserts.HttpHintException;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ListableBeanFactory;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.cowave.zoo.http.client.constants.HttpCode.BAD_REQUEST;
+
+/**
+ * 值转换器注册表，由DictHelper持有，按名称（类名或者Spring bean名称）缓存转换器实例
+ * <p/> 查找时才从Spring容器中按bean名称或者类名解析转换器，所以在@PostConstruct中加载字典也能引用Spring容器中的转换器；
+ * 都没有时按类名反射创建一次，之后复用，因此转换器需要是无状态的
+ *
+ * @author shanhuiming
+ */
+public class CustomValueParsers {
+
+    private final Map<String, CustomValueParser<?>> parsers = new ConcurrentHashMap<>();
+
+    private final ListableBeanFactory beanFactory;
+
+    public CustomValueParsers() {
+        this(null);
+    }
+
+    /**
+     * @param beanFactory 从中查找转换器，null表示只按类名反射创建
+     */
+    public CustomValueParsers(ListableBeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+    /**
+     * 注册转换器，覆盖同名的转换器
+     */
+    public void register(String name, CustomValueParser<?> parser) {
+        parsers.put(name, parser);
+    }
+
+    /**
+     * 获取转换器
+     *
+     * @throws HttpHintException 类不存在或者无法实例化
+     */
+    public CustomValueParser<?> get(String name) {
+        CustomValueParser<?> parser = parsers.get(name);
+        if (parser != null) {
+            return parser;
+        }
+        try {
+            parser = resolve(name);
+        } catch (IllegalArgumentException e) {
+            throw new HttpHintException(BAD_REQUEST, "{frame.parse.failed}", name);
+        }
+        CustomValueParser<?> exist = parsers.putIfAbsent(name, parser);
+        return exist != null ? exist : parser;
+    }
+
+    /**
+     * 转换字典值，custom类型使用注册表中的转换器
+     */
+    public Object getValue(Object value, String valueType, String valueParser) {
+        if (value == null || !"custom".equals(valueType)) {
+            return CustomValueParser.getValue(value, valueType, valueParser);
+        }
+        if (valueParser == null) {
+            return null;
+        }
+        return parse(get(valueParser), value);
+    }
+
+    /**
+     * 批量转换字典值，同一个转换器只查找一次
+     */
+    public void decode(Collection<? extends Dict> dicts) {
+        String lastName = null;
+        CustomValueParser<?> lastParser = null;
+        for (Dict dict : dicts) {
+            Object value = dict.getDictValue();
+            String valueType = dict.getValueType();
+            if (value == null || valueType == null) {
+                continue;
+            }
+            if (!"custom".equals(valueType)) {
+                dict.setDictValue(CustomValueParser.getValue(value, valueType, null));
+                continue;
+            }
+            String name = dict.getValueParser();
+            if (name == null) {
+                dict.setDictValue(null);
+                continue;
+            }
+            // 批量加载时通常同一类型的字典相邻
+            if (!name.equals(lastName)) {
+                lastParser = get(name);
+                lastName = name;
+            }
+            dict.setDictValue(parse(lastParser, value));
+        }
+    }
+
+    private CustomValueParser<?> resolve(String name) {
+        if (beanFactory != null) {
+            if (beanFactory.containsBean(name) && beanFactory.isTypeMatch(name, CustomValueParser.class)) {
+                return beanFactory.getBean(name, CustomValueParser.class);
+            }
+            // 按类名引用Spring容器中的转换器
+            for (CustomValueParser<?> parser : beanFactory.getBeanProvider(CustomValueParser.class)) {
+                if (AopUtils.getTargetClass(parser).getName().equals(name)) {
+                    return parser;
+                }
+            }
+        }
+        return newInstance(name);
+    }
+
+    static Object parse(CustomValueParser<?> parser, Object value) {
+        try {
+            return parser.parse(value);
+        } catch (Exception e) {
+            throw new HttpHintException(BAD_REQUEST, "{frame.parse.failed}", value);
+        }
+    }
+
+    static CustomValueParser<?> newInstance(String className) {
+        try {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            Class<?> clazz = Class.forName(className, true,
+                    classLoader != null ? classLoader : CustomValueParsers.class.getClassLoader());
+            return (CustomValueParser<?>) clazz.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new IllegalArgumentException(className, e);
+        }
+    }
+}
@@ -12,12 +12,19 @@
  */
 package com.cowave.zoo.framework.helper.redis.dict;
 
+import com.cowave.zoo.framework.helper.redis.RedisChannelSubscriber;
 import com.cowave.zoo.framework.helper.redis.RedisHelper;
 import com.cowave.zoo.framework.helper.redis.StringRedisHelper;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
 /**
  *
@@ -29,7 +36,35 @@ import org.springframework.data.redis.core.RedisOperations;
 public class DictConfiguration {
 
     @Bean
-    public DictHelper dictHelper(RedisHelper redisHelper, StringRedisHelper stringRedisHelper){
-        return new DictHelper(redisHelper, stringRedisHelper);
+    public DictHelper dictHelper(RedisHelper redisHelper, StringRedisHelper stringRedisHelper,
+                                 @Value("${spring.dict.batch-size:1000}") int batchSize,
+                                 ObjectProvider<DictNearCache> dictNearCache, ListableBeanFactory beanFactory){
+        // Spring容器中的值转换器在查找时解析，可以通过bean名称或者类名引用
+        return new DictHelper(redisHelper, stringRedisHelper, batchSize,
+                dictNearCache.getIfAvailable(), new CustomValueParsers(beanFactory));
+    }
+
+    /**
+     * 字典本地缓存
+     */
+    @ConditionalOnProperty(name = "spring.dict.near-cache.enable", havingValue = "true")
+    @ConditionalOnClass(name = "com.github.benmanes.caffeine.cache.Caffeine")
+    @Configuration(proxyBeanMethods = false)
+    static class DictNearCacheConfiguration {
+
+        @Bean
+        public DictNearCache dictNearCache(@Value("${spring.dict.near-cache.maximum-size:10000}") long maximumSize,
+                                           @Value("${spring.dict.near-cache.expire-after-write:600}") long expireAfterWrite) {
+            return new DictNearCache(maximumSize, expireAfterWrite);
+        }
+
+        /**
+         * 订阅字典变更通知
+         */
+        @Bean
+        public SmartInitializingSingleton dictNearCacheSubscriber(DictNearCache dictNearCache,
+                ObjectProvider<RedisMessageListenerContainer> listenerContainer) {
+            return new RedisChannelSubscriber(listenerContainer, DictNearCache.CHANNEL, () -> dictNearCache);
+        }
     }
 }
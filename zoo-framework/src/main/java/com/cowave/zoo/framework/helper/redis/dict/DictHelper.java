@@ -13,13 +13,13 @@
 package com.cowave.zoo.framework.helper.redis.dict;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 import com.cowave.zoo.http.client.asserts.HttpHintException;
 import com.cowave.zoo.framework.helper.redis.RedisHelper;
 import com.cowave.zoo.framework.helper.redis.StringRedisHelper;
 import org.apache.commons.lang3.StringUtils;
-
-import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.RedisOperations;
 
 import static com.cowave.zoo.http.client.constants.HttpCode.BAD_REQUEST;
 
@@ -28,13 +28,88 @@ import static com.cowave.zoo.http.client.constants.HttpCode.BAD_REQUEST;
  * @author shanhuiming
  *
  */
-@RequiredArgsConstructor
 public class DictHelper {
 
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
     private final RedisHelper redisHelper;
 
     private final StringRedisHelper stringRedisHelper;
 
+    /**
+     * 批量操作时每次pipeline的命令数
+     */
+    private final int batchSize;
+
+    /**
+     * 本地缓存，null表示不缓存
+     */
+    private final DictNearCache nearCache;
+
+    /**
+     * 值转换器
+     */
+    private final CustomValueParsers valueParsers;
+
+    public DictHelper(RedisHelper redisHelper, StringRedisHelper stringRedisHelper) {
+        this(redisHelper, stringRedisHelper, DEFAULT_BATCH_SIZE, null);
+    }
+
+    public DictHelper(RedisHelper redisHelper, StringRedisHelper stringRedisHelper, int batchSize) {
+        this(redisHelper, stringRedisHelper, batchSize, null);
+    }
+
+    public DictHelper(RedisHelper redisHelper, StringRedisHelper stringRedisHelper, int batchSize, DictNearCache nearCache) {
+        this(redisHelper, stringRedisHelper, batchSize, nearCache, new CustomValueParsers());
+    }
+
+    public DictHelper(RedisHelper redisHelper, StringRedisHelper stringRedisHelper, int batchSize,
+                      DictNearCache nearCache, CustomValueParsers valueParsers) {
+        this.redisHelper = redisHelper;
+        this.stringRedisHelper = stringRedisHelper;
+        this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+        this.nearCache = nearCache;
+        this.valueParsers = valueParsers;
+    }
+
+    /**
+     * 值转换器注册表
+     */
+    public CustomValueParsers getValueParsers() {
+        return valueParsers;
+    }
+
+    /**
+     * 通知所有节点失效本地缓存（不管本节点是否开启，其它节点可能开启）
+     */
+    private void notifyChanged(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        if (keys.size() > batchSize) {
+            notifyChangedAll();
+            return;
+        }
+        if (nearCache != null) {
+            nearCache.invalidate(keys);
+        }
+        publish(String.join("\n", keys));
+    }
+
+    private void notifyChangedAll() {
+        if (nearCache != null) {
+            nearCache.invalidateAll();
+        }
+        publish(DictNearCache.ALL);
+    }
+
+    /**
+     * 直接发送字符串，不经过sendChannel的JSON序列化（否则会带上引号并转义换行，DictNearCache无法识别）
+     */
+    private void publish(String message) {
+        stringRedisHelper.getRedisTemplate().convertAndSend(DictNearCache.CHANNEL, message);
+    }
+
     private String getGroupKey(String... prefixes) {
         String prefix = "";
         if (prefixes != null && prefixes.length > 0) {
@@ -68,12 +143,46 @@ public class DictHelper {
             prefix = String.join(":", prefixes) + ":";
         }
         stringRedisHelper.luaClean(prefix + "dict:*");
+        notifyChangedAll();
     }
 
     /**
      * 存入字典缓存
      */
     public void put(Dict dict, String... prefixes) {
+        putAll(List.of(dict), prefixes);
+    }
+
+    /**
+     * 批量存入字典缓存，按批次pipeline写入，同一个分组/类型的字典合并为一次HSET
+     */
+    public void putAll(Collection<? extends Dict> dicts, String... prefixes) {
+        if(dicts == null || dicts.isEmpty()){
+            return;
+        }
+        for (Dict dict : dicts) {
+            check(dict);
+        }
+
+        String groupKey = getGroupKey(prefixes);
+        String typeKey = getTypeKey(prefixes);
+        String dictKey = getDictKey(prefixes);
+        Set<String> changedKeys = new LinkedHashSet<>();
+        List<Dict> batch = new ArrayList<>(Math.min(dicts.size(), batchSize));
+        for (Dict dict : dicts) {
+            batch.add(dict);
+            if(batch.size() >= batchSize){
+                putBatch(batch, groupKey, typeKey, dictKey, changedKeys);
+                batch.clear();
+            }
+        }
+        if(!batch.isEmpty()){
+            putBatch(batch, groupKey, typeKey, dictKey, changedKeys);
+        }
+        notifyChanged(changedKeys);
+    }
+
+    private void check(Dict dict) {
         if(dict.getGroupCode() == null){
             throw new HttpHintException(BAD_REQUEST, "{frame.dict.group.null}");
         }
@@ -83,53 +192,77 @@ public class DictHelper {
         if(dict.getDictCode() == null){
             throw new HttpHintException(BAD_REQUEST, "{frame.dict.code.null}");
         }
+    }
 
-        Object dictValue = CustomValueParser.getValue(dict.getDictValue(), dict.getValueType(), dict.getValueParser());
-        dict.setDictValue(dictValue);
-
-        if(!"root".equals(dict.getTypeCode())){
-            redisHelper.putMap(getGroupKey(prefixes) + dict.getGroupCode(), dict.getDictCode(), dict);
-            if(!"root".equals(dict.getGroupCode())){
-                redisHelper.putMap(getTypeKey(prefixes) + dict.getTypeCode(), dict.getDictCode(), dict);
+    private void putBatch(List<Dict> batch, String groupKey, String typeKey, String dictKey, Set<String> changedKeys) {
+        Map<String, Map<String, Object>> hashes = new LinkedHashMap<>();
+        List<Consumer<RedisOperations<String, Object>>> operations = new ArrayList<>(batch.size() + 16);
+        valueParsers.decode(batch);
+        for (Dict dict : batch) {
+            if(!"root".equals(dict.getTypeCode())){
+                hashes.computeIfAbsent(groupKey + dict.getGroupCode(), k -> new LinkedHashMap<>()).put(dict.getDictCode(), dict);
+                if(!"root".equals(dict.getGroupCode())){
+                    hashes.computeIfAbsent(typeKey + dict.getTypeCode(), k -> new LinkedHashMap<>()).put(dict.getDictCode(), dict);
+                }
             }
+            String key = dictKey + dict.getDictCode();
+            operations.add(redisOps -> redisOps.opsForValue().set(key, dict));
+        }
+        hashes.forEach((key, entries) -> operations.add(redisOps -> redisOps.opsForHash().putAll(key, entries)));
+        redisHelper.pipeline(operations);
+        changedKeys.addAll(hashes.keySet());
+        for (Dict dict : batch) {
+            changedKeys.add(dictKey + dict.getDictCode());
         }
-        redisHelper.putValue(getDictKey(prefixes) + dict.getDictCode(), dict);
     }
 
     /**
-     * 获取某个分组字典
+     * 获取某个分组字典（启用本地缓存时列表是副本，其中的Dict是共享的，不能修改）
      */
     public <T extends Dict> List<T> getGroup(String groupCode, String... prefixes) {
         if(StringUtils.isBlank(groupCode)){
             return new ArrayList<>();
         }
-        Map<String, T> map = redisHelper.getMap(getGroupKey(prefixes) + groupCode);
-        List<T> list = new ArrayList<>(map.values());
-        list.sort(Comparator.comparingInt(Dict::getDictOrder));
-        return list;
+        return getSortedList(getGroupKey(prefixes) + groupCode);
     }
 
     /**
-     * 获取某个类型字典
+     * 获取某个类型字典（启用本地缓存时列表是副本，其中的Dict是共享的，不能修改）
      */
     public <T extends Dict> List<T> getType(String typeCode, String... prefixes) {
         if(StringUtils.isBlank(typeCode)){
             return new ArrayList<>();
         }
-        Map<String, T> map = redisHelper.getMap(getTypeKey(prefixes) + typeCode);
+        return getSortedList(getTypeKey(prefixes) + typeCode);
+    }
+
+    private <T extends Dict> List<T> getSortedList(String key) {
+        if(nearCache == null){
+            return loadSortedList(key);
+        }
+        List<T> list = nearCache.get(key, () -> Collections.unmodifiableList(this.<T>loadSortedList(key)));
+        return new ArrayList<>(list);
+    }
+
+    private <T extends Dict> List<T> loadSortedList(String key) {
+        Map<String, T> map = redisHelper.getMap(key);
         List<T> list = new ArrayList<>(map.values());
         list.sort(Comparator.comparingInt(Dict::getDictOrder));
         return list;
     }
 
     /**
-     * 获取字典
+     * 获取字典（启用本地缓存时返回的Dict是共享的，不能修改）
      */
     public <T extends Dict> T getDict(String dictCode, String... prefixes) {
         if(StringUtils.isBlank(dictCode)){
             return null;
         }
-        return redisHelper.getValue(getDictKey(prefixes) + dictCode);
+        String key = getDictKey(prefixes) + dictCode;
+        if(nearCache == null){
+            return redisHelper.getValue(key);
+        }
+        return nearCache.get(key, () -> redisHelper.<T>getValue(key));
     }
 
     /**
@@ -161,13 +294,51 @@ public class DictHelper {
         if(StringUtils.isBlank(dictCode)){
             return;
         }
-        Dict dict = redisHelper.getValue(getDictKey(prefixes) + dictCode);
-        if(dict == null){
+        removeDicts(List.of(dictCode), prefixes);
+    }
+
+    /**
+     * 批量删除字典，按批次MGET字典后pipeline删除
+     */
+    public void removeDicts(Collection<String> dictCodes, String... prefixes) {
+        if(dictCodes == null || dictCodes.isEmpty()){
             return;
         }
-        redisHelper.delete(getDictKey(prefixes) + dictCode);
-        redisHelper.removeFromMap(getTypeKey(prefixes) + dict.getTypeCode(), dictCode);
-        redisHelper.removeFromMap(getGroupKey(prefixes) + dict.getGroupCode(), dictCode);
+        String dictKey = getDictKey(prefixes);
+        String typeKey = getTypeKey(prefixes);
+        String groupKey = getGroupKey(prefixes);
+        List<String> keys = new ArrayList<>(dictCodes.size());
+        for (String dictCode : dictCodes) {
+            if(StringUtils.isNotBlank(dictCode)){
+                keys.add(dictKey + dictCode);
+            }
+        }
+        Set<String> changedKeys = new LinkedHashSet<>();
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            List<String> batchKeys = keys.subList(from, Math.min(from + batchSize, keys.size()));
+            List<Dict> dicts = redisHelper.getMultiValue(batchKeys);
+            List<String> deleteKeys = new ArrayList<>(batchKeys.size());
+            Map<String, List<Object>> hashFields = new LinkedHashMap<>();
+            for (int i = 0; i < batchKeys.size(); i++) {
+                Dict dict = dicts == null ? null : dicts.get(i);
+                if(dict == null){
+                    continue;
+                }
+                deleteKeys.add(batchKeys.get(i));
+                hashFields.computeIfAbsent(typeKey + dict.getTypeCode(), k -> new ArrayList<>()).add(dict.getDictCode());
+                hashFields.computeIfAbsent(groupKey + dict.getGroupCode(), k -> new ArrayList<>()).add(dict.getDictCode());
+            }
+            if(deleteKeys.isEmpty()){
+                continue;
+            }
+            List<Consumer<RedisOperations<String, Object>>> operations = new ArrayList<>(hashFields.size() + 1);
+            operations.add(redisOps -> redisOps.delete(deleteKeys));
+            hashFields.forEach((key, fields) -> operations.add(redisOps -> redisOps.opsForHash().delete(key, fields.toArray())));
+            redisHelper.pipeline(operations);
+            changedKeys.addAll(deleteKeys);
+            changedKeys.addAll(hashFields.keySet());
+        }
+        notifyChanged(changedKeys);
     }
 
     /**
@@ -183,13 +354,29 @@ public class DictHelper {
         if(StringUtils.isBlank(typeCode)){
             return;
         }
+        String dictKey = getDictKey(prefixes);
+        String groupKey = getGroupKey(prefixes);
         Map<String, Dict> dictMap = redisHelper.getMap(getTypeKey(prefixes) + typeCode);
+        List<Consumer<RedisOperations<String, Object>>> operations = new ArrayList<>();
+        Set<String> changedKeys = new LinkedHashSet<>();
+        Map<String, List<Object>> groupFields = new LinkedHashMap<>();
+        List<String> dictKeys = new ArrayList<>(Math.min(dictMap.size(), batchSize));
         for (Dict dict : dictMap.values()) {
-            redisHelper.delete(getDictKey(prefixes) + dict.getDictCode());
-            redisHelper.removeFromMap(getGroupKey(prefixes) + dict.getGroupCode(), dict.getDictCode());
+            dictKeys.add(dictKey + dict.getDictCode());
+            groupFields.computeIfAbsent(groupKey + dict.getGroupCode(), k -> new ArrayList<>()).add(dict.getDictCode());
+            if(dictKeys.size() >= batchSize){
+                addRemoveOperations(operations, dictKeys, groupFields, changedKeys);
+                dictKeys = new ArrayList<>(batchSize);
+                groupFields = new LinkedHashMap<>();
+            }
         }
-        redisHelper.delete(getTypeKey(prefixes) + typeCode);
-        redisHelper.removeFromMap(getGroupKey(prefixes) + "group", typeCode);
+        addRemoveOperations(operations, dictKeys, groupFields, changedKeys);
+        operations.add(redisOps -> redisOps.delete(getTypeKey(prefixes) + typeCode));
+        operations.add(redisOps -> redisOps.opsForHash().delete(groupKey + "group", typeCode));
+        pipeline(operations);
+        changedKeys.add(getTypeKey(prefixes) + typeCode);
+        changedKeys.add(groupKey + "group");
+        notifyChanged(changedKeys);
     }
 
     /**
@@ -207,17 +394,53 @@ public class DictHelper {
         if(StringUtils.isBlank(groupCode)){
             return;
         }
+        String dictKey = getDictKey(prefixes);
+        String groupKey = getGroupKey(prefixes);
         Map<String, Dict> typeMap = redisHelper.getMap(getTypeKey(prefixes) + groupCode);
-        redisHelper.delete(getTypeKey(prefixes) + groupCode);
-        for (Dict type : typeMap.values()) {
-            redisHelper.removeFromMap(getGroupKey(prefixes) + "group", type.getDictCode());
-        }
+        Map<String, Dict> dictMap = redisHelper.getMap(groupKey + groupCode);
 
-        Map<String, Dict> dictMap = redisHelper.getMap(getGroupKey(prefixes) + groupCode);
+        List<Consumer<RedisOperations<String, Object>>> operations = new ArrayList<>();
+        Set<String> changedKeys = new LinkedHashSet<>();
+        operations.add(redisOps -> redisOps.delete(getTypeKey(prefixes) + groupCode));
+        if(!typeMap.isEmpty()){
+            Object[] typeCodes = typeMap.values().stream().map(Dict::getDictCode).toArray();
+            operations.add(redisOps -> redisOps.opsForHash().delete(groupKey + "group", typeCodes));
+        }
+        List<String> dictKeys = new ArrayList<>(Math.min(dictMap.size(), batchSize));
         for (Dict dict : dictMap.values()) {
-            redisHelper.delete(getDictKey(prefixes) + dict.getDictCode());
+            dictKeys.add(dictKey + dict.getDictCode());
+            if(dictKeys.size() >= batchSize){
+                addRemoveOperations(operations, dictKeys, Map.of(), changedKeys);
+                dictKeys = new ArrayList<>(batchSize);
+            }
+        }
+        addRemoveOperations(operations, dictKeys, Map.of(), changedKeys);
+        operations.add(redisOps -> redisOps.delete(groupKey + groupCode));
+        operations.add(redisOps -> redisOps.opsForHash().delete(groupKey + "root", groupCode));
+        pipeline(operations);
+        changedKeys.add(getTypeKey(prefixes) + groupCode);
+        changedKeys.add(groupKey + groupCode);
+        changedKeys.add(groupKey + "group");
+        changedKeys.add(groupKey + "root");
+        notifyChanged(changedKeys);
+    }
+
+    private void addRemoveOperations(List<Consumer<RedisOperations<String, Object>>> operations,
+                                     List<String> dictKeys, Map<String, List<Object>> hashFields, Set<String> changedKeys) {
+        if(!dictKeys.isEmpty()){
+            operations.add(redisOps -> redisOps.delete(dictKeys));
+        }
+        changedKeys.addAll(dictKeys);
+        changedKeys.addAll(hashFields.keySet());
+        hashFields.forEach((key, fields) -> operations.add(redisOps -> redisOps.opsForHash().delete(key, fields.toArray())));
+    }
+
+    /**
+     * 按批次pipeline执行
+     */
+    private void pipeline(List<Consumer<RedisOperations<String, Object>>> operations) {
+        for (int from = 0; from < operations.size(); from += batchSize) {
+            redisHelper.pipeline(operations.subList(from, Math.min(from + batchSize, operations.size())));
         }
-        redisHelper.delete(getGroupKey(prefixes) + groupCode);
-        redisHelper.removeFromMap(getGroupKey(prefixes) + "root", groupCode);
     }
 }
@@ -0,0 +1,106 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.helper.redis.dict;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 字典本地缓存，key为字典在Redis中的key，值为Dict或者排好序的分组/类型字典列表
+ * <p/> 字典变更时通过Redis频道通知所有节点失效（包括自己），消息为换行分隔的key，{@link #ALL}表示全部失效
+ * <p/> 加载前记录失效代数，加载期间如果发生失效则不写入缓存，避免旧值覆盖
+ * <p/> 缓存的Dict对象由所有调用方共享，调用方不能修改
+ *
+ * @author shanhuiming
+ */
+@Slf4j
+public class DictNearCache implements MessageListener {
+
+    public static final String CHANNEL = "dict:invalidate";
+
+    public static final String ALL = "*";
+
+    private static final Object NULL = new Object();
+
+    private final Cache<String, Object> cache;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param maximumSize      最大条目数
+     * @param expireAfterWrite 写入后过期时间（秒），作为丢失通知时的兜底
+     */
+    public DictNearCache(long maximumSize, long expireAfterWrite) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(maximumSize);
+        if (expireAfterWrite > 0) {
+            builder.expireAfterWrite(expireAfterWrite, TimeUnit.SECONDS);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * 获取缓存，不存在时加载（加载结果为null也会缓存）
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader) {
+        Object value = cache.getIfPresent(key);
+        if (value != null) {
+            return value == NULL ? null : (T) value;
+        }
+        long loadGeneration = generation.get();
+        T loaded = loader.get();
+        if (generation.get() == loadGeneration) {
+            cache.put(key, loaded == null ? NULL : loaded);
+            // 写入期间发生了失效
+            if (generation.get() != loadGeneration) {
+                cache.invalidate(key);
+            }
+        }
+        return loaded;
+    }
+
+    public void invalidate(Collection<String> keys) {
+        generation.incrementAndGet();
+        cache.invalidateAll(keys);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (ALL.equals(body)) {
+            invalidateAll();
+        } else {
+            invalidate(List.of(body.split("\n")));
+        }
+        log.debug("Dict near-cache invalidated, {}", body);
+    }
+}
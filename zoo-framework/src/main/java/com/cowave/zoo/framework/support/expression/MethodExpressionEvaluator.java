@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.support.expression;
+
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ParserContext;
+import org.springframework.expression.common.TemplateParserContext;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 方法注解上的SpEL表达式
+ * <p/> 按方法缓存解析后的表达式（MIXED模式编译，解释执行几次后编译成字节码，参数类型变化导致编译后的表达式执行失败时退回解释执行）以及方法参数名；
+ * 表达式按方法区分缓存，因为编译后的表达式依赖执行时的参数类型
+ *
+ * @author shanhuiming
+ *
+ */
+public class MethodExpressionEvaluator {
+
+    private static final ParserContext TEMPLATE_CONTEXT = new TemplateParserContext();
+
+    private static final String[] EMPTY_NAMES = new String[0];
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    private final Map<ExpressionKey, Expression> expressions = new ConcurrentHashMap<>();
+
+    private final Map<Method, String[]> parameterNames = new ConcurrentHashMap<>();
+
+    private final SpelExpressionParser parser;
+
+    public MethodExpressionEvaluator() {
+        this(MethodExpressionEvaluator.class.getClassLoader());
+    }
+
+    public MethodExpressionEvaluator(ClassLoader classLoader) {
+        this.parser = new SpelExpressionParser(new SpelParserConfiguration(SpelCompilerMode.MIXED, classLoader));
+    }
+
+    /**
+     * 表达式，比如 #user.name
+     */
+    public Expression getExpression(Method method, String expression) {
+        return expressions.computeIfAbsent(new ExpressionKey(method, expression, false),
+                k -> parser.parseExpression(expression));
+    }
+
+    /**
+     * 模板表达式，比如 user-#{#user.name}
+     */
+    public Expression getTemplate(Method method, String template) {
+        return expressions.computeIfAbsent(new ExpressionKey(method, template, true),
+                k -> parser.parseExpression(template, TEMPLATE_CONTEXT));
+    }
+
+    /**
+     * 方法参数名，获取不到时返回空数组
+     */
+    public String[] getParameterNames(Method method) {
+        return parameterNames.computeIfAbsent(method, m -> {
+            String[] names = parameterNameDiscoverer.getParameterNames(m);
+            return names != null ? names : EMPTY_NAMES;
+        });
+    }
+
+    /**
+     * 以方法参数为变量的上下文，参数在表达式引用时才查找
+     * <p/> 上下文中保存了调用参数，不能跨调用共享
+     */
+    public EvaluationContext createContext(Method method, Object[] args) {
+        return new MethodEvaluationContext(getParameterNames(method), args);
+    }
+
+    private record ExpressionKey(Method method, String expression, boolean template) {
+
+    }
+
+    private static class MethodEvaluationContext extends StandardEvaluationContext {
+
+        private final String[] paramNames;
+
+        private final Object[] args;
+
+        MethodEvaluationContext(String[] paramNames, Object[] args) {
+            this.paramNames = paramNames;
+            this.args = args;
+        }
+
+        @Override
+        public Object lookupVariable(String name) {
+            Object value = super.lookupVariable(name);
+            if (value != null || args == null) {
+                return value;
+            }
+            int count = Math.min(paramNames.length, args.length);
+            for (int i = 0; i < count; i++) {
+                if (paramNames[i].equals(name)) {
+                    return args[i];
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access;
+
+import com.alibaba.ttl.TransmittableThreadLocal;
+import com.cowave.zoo.framework.access.security.AccessUserDetails;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Access上下文读取：TransmittableThreadLocal与ThreadLocal对比，Optional访问方式与当前访问方式对比（4线程）
+ * <p/> ScopedValue需要Java 21，这里只对比ThreadLocal
+ *
+ * @author shanhuiming
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class AccessContextBenchmark {
+
+    private static final ThreadLocal<Access> TTL = new TransmittableThreadLocal<>();
+
+    private static final ThreadLocal<Access> PLAIN = new ThreadLocal<>();
+
+    @Setup
+    public void setup() {
+        Access access = new Access(true, "access-id", "127.0.0.1", "/api/v1/user", "get", System.currentTimeMillis());
+        AccessUserDetails userDetails = new AccessUserDetails();
+        userDetails.setTenantId("tenant");
+        userDetails.setUserId(10001L);
+        userDetails.setRoles(List.of("user"));
+        access.setUserDetails(userDetails);
+        Access.set(access);
+        TTL.set(access);
+        PLAIN.set(access);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Access.remove();
+        TTL.remove();
+        PLAIN.remove();
+    }
+
+    @Benchmark
+    public Access transmittableThreadLocal() {
+        return TTL.get();
+    }
+
+    @Benchmark
+    public Access threadLocal() {
+        return PLAIN.get();
+    }
+
+    @Benchmark
+    public void optionalAccessors(Blackhole blackhole) {
+        blackhole.consume(Optional.ofNullable(TTL.get()).map(Access::getAccessId).orElse(null));
+        blackhole.consume(Optional.ofNullable(TTL.get()).map(access -> new Date(access.getAccessTime())).orElse(new Date()));
+        blackhole.consume(Optional.ofNullable(TTL.get()).map(Access::getUserDetails)
+                .map(AccessUserDetails::getTenantId).orElse(null));
+        blackhole.consume(Optional.ofNullable(TTL.get()).map(Access::getUserDetails)
+                .map(AccessUserDetails::getRoles).orElse(List.of()));
+    }
+
+    @Benchmark
+    public void accessors(Blackhole blackhole) {
+        blackhole.consume(Access.accessId());
+        blackhole.consume(Access.accessTimeMillis());
+        blackhole.consume(Access.tenantId());
+        blackhole.consume(Access.userRoles());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AccessContextBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build();
+        new Runner(options).run();
+    }
+}
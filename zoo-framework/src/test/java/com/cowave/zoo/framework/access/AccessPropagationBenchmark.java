@@ -0,0 +1,111 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access;
+
+import com.alibaba.ttl.TransmittableThreadLocal;
+import com.alibaba.ttl.TtlRunnable;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 10k并发任务的上下文传递：TtlRunnable捕获/回放与AccessSnapshot对比
+ * <p/> 额外注册了若干TransmittableThreadLocal，模拟应用中其它组件的TTL
+ *
+ * @author shanhuiming
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccessPropagationBenchmark {
+
+    private static final int TASKS = 10_000;
+
+    private final List<TransmittableThreadLocal<String>> others = new ArrayList<>();
+
+    private final LongAdder counter = new LongAdder();
+
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newFixedThreadPool(16);
+        for (int i = 0; i < 8; i++) {
+            TransmittableThreadLocal<String> local = new TransmittableThreadLocal<>();
+            local.set("value" + i);
+            others.add(local);
+        }
+        Access.set(new Access(true, "access-id", "127.0.0.1", "/api/v1/user", "get", System.currentTimeMillis()));
+        MDC.put("accessId", "access-id");
+    }
+
+    @TearDown
+    public void tearDown() {
+        others.forEach(TransmittableThreadLocal::remove);
+        Access.remove();
+        MDC.clear();
+        executor.shutdownNow();
+    }
+
+    private void task(CountDownLatch latch) {
+        if (Access.accessId() != null) {
+            counter.increment();
+        }
+        latch.countDown();
+    }
+
+    @Benchmark
+    public void none() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            executor.execute(() -> task(latch));
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    public void ttl() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            executor.execute(TtlRunnable.get(() -> task(latch), true, true));
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    public void snapshot() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            executor.execute(AccessSnapshot.wrap(() -> task(latch)));
+        }
+        latch.await();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AccessPropagationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
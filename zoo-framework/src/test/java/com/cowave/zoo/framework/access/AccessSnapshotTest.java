@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AccessSnapshot上下文传递与恢复
+ *
+ * @author shanhuiming
+ */
+public class AccessSnapshotTest {
+
+    @AfterEach
+    void clear() {
+        Access.remove();
+        MDC.clear();
+    }
+
+    private Access newAccess(String accessId) {
+        return new Access(true, accessId, "127.0.0.1", "/api", "get", System.currentTimeMillis());
+    }
+
+    @Test
+    void propagateToPooledThread() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            // 线程先创建，不会继承上下文
+            pool.submit(() -> { }).get();
+
+            Access.set(newAccess("a1"));
+            MDC.put("accessId", "a1");
+            Callable<String> callable = AccessSnapshot.wrap(() -> Access.accessId() + ":" + MDC.get("accessId"));
+            assertEquals("a1:a1", pool.submit(callable).get());
+
+            // 执行后恢复线程原来的上下文
+            assertNull(pool.submit(Access::accessId).get());
+            assertNull(pool.submit(() -> MDC.get("accessId")).get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void restoreCallerContext() {
+        Access.set(newAccess("a1"));
+        AccessSnapshot snapshot = AccessSnapshot.capture();
+
+        Access.set(newAccess("a2"));
+        String[] inside = new String[1];
+        snapshot.run(() -> inside[0] = Access.accessId());
+        assertEquals("a1", inside[0]);
+        assertEquals("a2", Access.accessId());
+    }
+
+    @Test
+    void wrapExecutor() throws Exception {
+        Access.set(newAccess("a1"));
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Executor executor = AccessSnapshot.wrap((Executor) command -> new Thread(command).start());
+        executor.execute(() -> future.complete(Access.accessId()));
+        assertEquals("a1", future.get(5, TimeUnit.SECONDS));
+    }
+}
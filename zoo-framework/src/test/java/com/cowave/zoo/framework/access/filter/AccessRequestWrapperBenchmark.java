@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.filter;
+
+import com.cowave.zoo.framework.access.Access;
+import com.cowave.zoo.framework.access.AccessProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import javax.servlet.ServletInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AccessRequestWrapper body缓存与解析基准测试（1KB / 100KB / 5MB）
+ * <p/> 运行：main方法，或 mvn test-compile 后通过 org.openjdk.jmh.Main 执行
+ *
+ * @author shanhuiming
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccessRequestWrapperBenchmark {
+
+    @Param({"1024", "102400", "5242880"})
+    private int bodySize;
+
+    @Param({"1048576"})
+    private int bodyCaptureSize;
+
+    @Param({"false", "true"})
+    private boolean bodyStreaming;
+
+    private AccessProperties.AccessLog accessLog;
+
+    private byte[] body;
+
+    private ObjectMapper objectMapper;
+
+    private ObjectWriter sensitiveWriter;
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper();
+        sensitiveWriter = objectMapper.writer();
+        accessLog = new AccessProperties.AccessLog();
+        accessLog.setBodyCaptureSize(bodyCaptureSize);
+        accessLog.setBodyStreaming(bodyStreaming);
+        StringBuilder builder = new StringBuilder(bodySize + 32);
+        builder.append("{\"pageNum\":1,\"pageSize\":10,\"data\":\"");
+        while (builder.length() < bodySize - 2) {
+            builder.append('x');
+        }
+        builder.append("\"}");
+        body = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private MockHttpServletRequest newRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/bench");
+        request.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        request.setContent(body);
+        return request;
+    }
+
+    private AccessRequestWrapper newWrapper() throws IOException {
+        Access access = new Access(true, "bench", "127.0.0.1", "/api/bench", "POST", System.currentTimeMillis());
+        return new AccessRequestWrapper(newRequest(), objectMapper, sensitiveWriter,
+                access, Collections.emptySet(), null, accessLog);
+    }
+
+    /**
+     * 包装并由下游读完body
+     */
+    @Benchmark
+    public void wrapAndDrain(Blackhole blackhole) throws IOException {
+        AccessRequestWrapper wrapper = newWrapper();
+        byte[] buf = new byte[8192];
+        ServletInputStream inputStream = wrapper.getInputStream();
+        int n;
+        while ((n = inputStream.read(buf)) > 0) {
+            blackhole.consume(n);
+        }
+    }
+
+    /**
+     * 包装、记录访问参数，并由下游读完body
+     */
+    @Benchmark
+    public void wrapRecordAndDrain(Blackhole blackhole) throws IOException {
+        AccessRequestWrapper wrapper = newWrapper();
+        wrapper.recordAccessParams();
+        blackhole.consume(wrapper.getInputStream().readAllBytes());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AccessRequestWrapperBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
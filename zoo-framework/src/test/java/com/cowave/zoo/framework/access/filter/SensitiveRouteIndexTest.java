@@ -0,0 +1,59 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 脱敏路由索引
+ *
+ * @author shanhuiming
+ */
+public class SensitiveRouteIndexTest {
+
+    @Test
+    void match() {
+        SensitiveRouteIndex index = new SensitiveRouteIndex(2);
+        index.register("POST", "/api/users", Set.of("password"), String.class);
+        index.register("GET", "/api/users/{id}", Set.of("token"), null);
+        index.register("GET", "/api/users/current", Set.of("secret"), null);
+        index.register(SensitiveRouteIndex.ALL, "/api/files/*.json", Set.of("sign"), null);
+        index.register(SensitiveRouteIndex.ALL, "/api/docs/{*path}", Set.of("key"), null);
+
+        assertEquals(String.class, index.match("POST", "/api/users").getBodyClass());
+        assertNull(index.match("GET", "/api/users").getBodyClass());
+        assertTrue(index.match("GET", "/api/users").getParamFields().isEmpty());
+
+        assertEquals(Set.of("token"), index.match("GET", "/api/users/1").getParamFields());
+        assertEquals(Set.of("token"), index.match("GET", "/api/users/1/").getParamFields());
+        assertEquals(Set.of("secret"), index.match("GET", "/api/users/current").getParamFields());
+        assertTrue(index.match("GET", "/api/users/1/roles").getParamFields().isEmpty());
+
+        assertEquals(Set.of("sign"), index.match("PUT", "/api/files/a.json").getParamFields());
+        assertTrue(index.match("PUT", "/api/files/a.xml").getParamFields().isEmpty());
+
+        assertEquals(Set.of("key"), index.match("GET", "/api/docs").getParamFields());
+        assertEquals(Set.of("key"), index.match("DELETE", "/api/docs/a/b/c").getParamFields());
+
+        // 缓存淘汰后结果不变
+        assertEquals(Set.of("token"), index.match("GET", "/api/users/1").getParamFields());
+
+        // 非标准方法不缓存，仍然可以匹配ALL
+        assertEquals(Set.of("key"), index.match("FOO1", "/api/docs/a").getParamFields());
+        assertTrue(index.match("FOO2", "/api/users/1").getParamFields().isEmpty());
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 复制构造要复制所有属性（VerifiedTokenCache依赖它返回副本）
+ *
+ * @author shanhuiming
+ */
+public class AccessUserDetailsTest {
+
+    @Test
+    void copyAllFields() throws Exception {
+        AccessUserDetails source = new AccessUserDetails();
+        List<Field> fields = new ArrayList<>();
+        for (Field field : AccessUserDetails.class.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+                continue;
+            }
+            field.setAccessible(true);
+            field.set(source, sample(field, source));
+            fields.add(field);
+        }
+
+        AccessUserDetails copy = new AccessUserDetails(source);
+        for (Field field : fields) {
+            assertEquals(field.get(source), field.get(copy), "field not copied: " + field.getName());
+        }
+    }
+
+    /**
+     * 与默认值不同的值
+     */
+    private Object sample(Field field, Object target) throws IllegalAccessException {
+        Class<?> type = field.getType();
+        if (type == boolean.class || type == Boolean.class) {
+            return !Boolean.TRUE.equals(field.get(target));
+        }
+        if (type == int.class || type == Integer.class) {
+            return 7;
+        }
+        if (type == long.class || type == Long.class) {
+            return 7L;
+        }
+        if (type == String.class || type == Object.class) {
+            return field.getName();
+        }
+        if (type == Date.class) {
+            return new Date(7);
+        }
+        if (type == List.class) {
+            return new ArrayList<>();
+        }
+        if (type == Map.class) {
+            return new HashMap<>();
+        }
+        throw new IllegalStateException("unsupported field type " + type + ", add a sample value for " + field.getName());
+    }
+}
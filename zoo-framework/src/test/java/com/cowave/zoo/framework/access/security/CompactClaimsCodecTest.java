@@ -0,0 +1,132 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 紧凑claims编码、Redis令牌信息紧凑序列化
+ *
+ * @author shanhuiming
+ */
+public class CompactClaimsCodecTest {
+
+    private AccessUserDetails newUserDetails(int permits) {
+        AccessUserDetails userDetails = new AccessUserDetails();
+        userDetails.setRoles(List.of("user", "auditor"));
+        List<String> permissions = new ArrayList<>();
+        Map<String, List<Integer>> scopes = new HashMap<>();
+        for (int i = 0; i < permits; i++) {
+            permissions.add("sys:module" + i + ":query");
+            scopes.put("sys:module" + i + ":query", List.of(i, i + 1000));
+        }
+        userDetails.setPermissions(permissions);
+        userDetails.setPermitScopes(scopes);
+        userDetails.setUserProperties(new LinkedHashMap<>(Map.of("level", 3, "email", "user@example.com")));
+        return userDetails;
+    }
+
+    @Test
+    void roundTripWithoutDictionary() throws Exception {
+        AccessUserDetails userDetails = newUserDetails(200);
+        CompactClaimsCodec codec = new CompactClaimsCodec(null);
+        String claim = codec.encode(userDetails);
+
+        AccessUserDetails decoded = new AccessUserDetails();
+        codec.decode(claim, decoded);
+        assertEquals(userDetails.getRoles(), decoded.getRoles());
+        assertEquals(userDetails.getPermissions(), decoded.getPermissions());
+        assertEquals(userDetails.getPermitScopes(), decoded.getPermitScopes());
+        assertEquals(userDetails.getUserProperties(), decoded.getUserProperties());
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        int jsonSize = objectMapper.writeValueAsString(List.of(userDetails.getRoles(), userDetails.getPermissions(),
+                userDetails.getPermitScopes(), userDetails.getUserProperties())).length();
+        assertTrue(claim.length() < jsonSize / 2, claim.length() + " vs " + jsonSize);
+    }
+
+    @Test
+    void roundTripWithDictionary() {
+        AccessUserDetails userDetails = newUserDetails(200);
+        List<String> dictionary = new ArrayList<>(userDetails.getPermissions());
+        // 字典外的权限
+        userDetails.setPermissions(new ArrayList<>(userDetails.getPermissions()));
+        userDetails.getPermissions().add("ext:permit");
+
+        CompactClaimsCodec codec = new CompactClaimsCodec(PermitDictionary.of(dictionary));
+        String claim = codec.encode(userDetails);
+        String plain = new CompactClaimsCodec(null).encode(userDetails);
+        assertTrue(claim.length() < plain.length(), claim.length() + " vs " + plain.length());
+
+        AccessUserDetails decoded = new AccessUserDetails();
+        codec.decode(claim, decoded);
+        assertEquals(new HashSet<>(userDetails.getPermissions()), new HashSet<>(decoded.getPermissions()));
+        assertEquals(userDetails.getPermitScopes(), decoded.getPermitScopes());
+
+        // 字典变化后不能解析
+        dictionary.add("new:permit");
+        CompactClaimsCodec changed = new CompactClaimsCodec(PermitDictionary.of(dictionary));
+        assertThrows(IllegalArgumentException.class, () -> changed.decode(claim, new AccessUserDetails()));
+    }
+
+    @Test
+    void nullValues() {
+        CompactClaimsCodec codec = new CompactClaimsCodec(PermitDictionary.of(List.of("a")));
+        AccessUserDetails decoded = new AccessUserDetails();
+        decoded.setRoles(List.of("x"));
+        codec.decode(codec.encode(new AccessUserDetails()), decoded);
+        assertNull(decoded.getRoles());
+        assertNull(decoded.getPermissions());
+        assertNull(decoded.getPermitScopes());
+        assertNull(decoded.getUserProperties());
+    }
+
+    @Test
+    void tokenInfoSerializer() {
+        GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+        CompactTokenInfoSerializer serializer = new CompactTokenInfoSerializer(json);
+
+        AccessUserDetails userDetails = newUserDetails(50);
+        userDetails.setAccessId("access-id");
+        userDetails.setRefreshId("refresh-id");
+        userDetails.setTenantId("tenant");
+        userDetails.setUserId(10001L);
+        userDetails.setUserCode("U001");
+        userDetails.setUsername("user");
+        userDetails.setClusterId(1);
+        userDetails.setLoginTime(new Date());
+        RefreshTokenInfo refreshTokenInfo = new RefreshTokenInfo(userDetails);
+
+        byte[] compact = serializer.serialize(refreshTokenInfo);
+        assertTrue(compact.length < json.serialize(refreshTokenInfo).length);
+        assertEquals(refreshTokenInfo, serializer.deserialize(compact));
+
+        AccessTokenInfo accessTokenInfo = new AccessTokenInfo(userDetails);
+        accessTokenInfo.setRevoked(1);
+        assertEquals(accessTokenInfo, serializer.deserialize(serializer.serialize(accessTokenInfo)));
+
+        // 之前保存的json仍然可以读取
+        assertEquals(accessTokenInfo, serializer.deserialize(json.serialize(accessTokenInfo)));
+
+        // 切回json写入后，之前保存的compact仍然可以读取
+        CompactTokenInfoSerializer jsonWriter = new CompactTokenInfoSerializer(json, false);
+        assertArrayEquals(json.serialize(accessTokenInfo), jsonWriter.serialize(accessTokenInfo));
+        assertEquals(refreshTokenInfo, jsonWriter.deserialize(compact));
+    }
+}
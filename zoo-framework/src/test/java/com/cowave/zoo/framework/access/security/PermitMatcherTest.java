@@ -0,0 +1,102 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.access.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 权限匹配
+ *
+ * @author shanhuiming
+ */
+public class PermitMatcherTest {
+
+    @Test
+    void matchPrefix() {
+        PermitMatcher matcher = PermitMatcher.compile(List.of("sys:user", "sys:role:query"));
+        assertTrue(matcher.matches("sys:user"));
+        assertTrue(matcher.matches("sys:user:edit"));
+        assertTrue(matcher.matches("sys:role:query"));
+        assertFalse(matcher.matches("sys:role"));
+        assertFalse(matcher.matches("sys:role:edit"));
+        assertFalse(matcher.matches("sys:users"));
+        assertFalse(matcher.matches("sys"));
+    }
+
+    @Test
+    void matchWildcard() {
+        PermitMatcher matcher = PermitMatcher.compile(List.of("sys:*", "log:*:query"));
+        assertTrue(matcher.matches("sys"));
+        assertTrue(matcher.matches("sys:user:edit"));
+        // *之后的段忽略
+        assertTrue(matcher.matches("log:access:delete"));
+        assertFalse(matcher.matches("dict:query"));
+
+        assertTrue(PermitMatcher.compile(List.of("*")).matches("any:thing"));
+    }
+
+    @Test
+    void matchTrailingSeparator() {
+        PermitMatcher matcher = PermitMatcher.compile(List.of("sys:user:", " "));
+        assertTrue(matcher.matches("sys:user"));
+        assertTrue(matcher.matches("sys:user::"));
+        assertFalse(matcher.matches("sys::user"));
+        assertFalse(PermitMatcher.compile(null).matches("sys:user"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void cacheOnUserDetails() {
+        AccessUserDetails userDetails = new AccessUserDetails();
+        userDetails.setRoles(List.of("user"));
+        userDetails.setPermissions(List.of("sys:user:query"));
+        assertFalse(userDetails.isAdmin());
+        assertTrue(userDetails.matchPermit("sys:user:query"));
+        assertEquals(userDetails.getAuthorities(), userDetails.getAuthorities());
+        // 返回副本，修改不影响缓存
+        Collection<GrantedAuthority> authorities = (Collection<GrantedAuthority>) userDetails.getAuthorities();
+        authorities.add(new SimpleGrantedAuthority("extra"));
+        assertEquals(1, userDetails.getAuthorities().size());
+
+        // 重新设置后重新计算
+        userDetails.setRoles(List.of(Permission.ROLE_ADMIN));
+        userDetails.setPermissions(List.of("sys:role"));
+        assertTrue(userDetails.isAdmin());
+        assertFalse(userDetails.matchPermit("sys:user:query"));
+        assertTrue(userDetails.matchPermit("sys:role:edit"));
+        assertEquals(Permission.ROLE_ADMIN, userDetails.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    void sharedByVerifiedTokenCache() {
+        AccessUserDetails userDetails = new AccessUserDetails();
+        userDetails.setRoles(List.of("user"));
+        userDetails.setPermissions(List.of("sys:user:query"));
+        VerifiedTokenCache cache = new VerifiedTokenCache(60, 100);
+        cache.put("token", userDetails, null, cache.stamp());
+
+        AccessUserDetails first = cache.get("token");
+        AccessUserDetails second = cache.get("token");
+        assertNotSame(first, second);
+        assertTrue(first.matchPermit("sys:user:query"));
+        // 缓存的副本复用同一个编译结果
+        assertSame(first.getPermitMatcher(), second.getPermitMatcher());
+    }
+}
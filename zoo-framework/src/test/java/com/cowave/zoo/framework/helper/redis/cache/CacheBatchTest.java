@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.helper.redis.cache;
+
+import com.cowave.zoo.framework.helper.redis.RedisHelper;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 批量查询经过缓存、L2批量读取
+ *
+ * @author shanhuiming
+ */
+public class CacheBatchTest {
+
+    @Test
+    void getAll() {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setL1Enable(true);
+        RedisCaffeineCache cache = new RedisCaffeineCache("user", cacheProperties, CaffeineCache.of(cacheProperties.getL1()), null);
+        List<Collection<Long>> loads = new ArrayList<>();
+
+        Map<Long, String> users = CacheBatch.getAll(cache, List.of(1L, 2L, 3L), ids -> {
+            loads.add(ids);
+            return Map.of(1L, "a", 2L, "b");
+        });
+        assertEquals(List.of(1L, 2L), new ArrayList<>(users.keySet()));
+
+        users = CacheBatch.getAll(cache, List.of(4L, 1L, 2L, 3L), ids -> {
+            loads.add(ids);
+            return Map.of(4L, "d");
+        });
+        assertEquals(List.of(4L, 1L, 2L), new ArrayList<>(users.keySet()));
+        assertEquals("d", users.get(4L));
+        assertEquals(List.of(List.of(1L, 2L, 3L), List.of(4L, 3L)), loads);
+    }
+
+    @Test
+    void redisGetAll() {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setL2Enable(true);
+        RedisHelper redisHelper = mock(RedisHelper.class);
+        when(redisHelper.getMultiValue(anyCollection())).thenReturn(Arrays.asList("a", null));
+        RedisCache redisCache = new RedisCache(cacheProperties, redisHelper, null);
+
+        Map<Long, Object> values = redisCache.getAll("user", List.of(1L, 2L));
+        assertEquals(Map.of(1L, "a"), values);
+        verify(redisHelper).getMultiValue(List.of("user:1", "user:2"));
+        verify(redisHelper, never()).getValue(anyString());
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.helper.redis.cache;
+
+import com.cowave.zoo.framework.helper.redis.RedisHelper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * L1失效通知合并发送、忽略自己的消息
+ *
+ * @author shanhuiming
+ */
+public class CacheInvalidationBusTest {
+
+    private final GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer();
+
+    private RedisHelper redisHelper() {
+        RedisHelper redisHelper = mock(RedisHelper.class);
+        when(redisHelper.getValueSerializer()).thenReturn(serializer);
+        return redisHelper;
+    }
+
+    private RedisCaffeineCacheManager manager(CacheInvalidationBus bus) {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setL1Enable(true);
+        return new RedisCaffeineCacheManager(cacheProperties, new CaffeineCache(cacheProperties), null, bus);
+    }
+
+    @Test
+    void coalesce() throws Exception {
+        RedisHelper redisHelper = redisHelper();
+        CacheInvalidationBus bus = new CacheInvalidationBus(redisHelper, 60_000, 500);
+        RedisCaffeineCacheManager manager = manager(bus);
+        Cache users = manager.getCache("users");
+        Cache roles = manager.getCache("roles");
+        users.put("u1", "v1");
+        users.put("u2", "v2");
+        users.evict("u1");
+        roles.put("r1", "v1");
+        roles.clear();
+        bus.flush();
+
+        ArgumentCaptor<CacheInvalidation> captor = ArgumentCaptor.forClass(CacheInvalidation.class);
+        verify(redisHelper, times(1)).sendChannel(eq(CacheInvalidationBus.CHANNEL), captor.capture());
+        CacheInvalidation invalidation = captor.getValue();
+        assertEquals(bus.getNodeId(), invalidation.getNodeId());
+        assertEquals(2, invalidation.getKeys().get("users").size());
+        assertNull(invalidation.getKeys().get("roles"));
+        assertEquals(List.of("roles"), invalidation.getClears());
+        bus.destroy();
+    }
+
+    @Test
+    void splitByBatchSize() throws Exception {
+        RedisHelper redisHelper = redisHelper();
+        CacheInvalidationBus bus = new CacheInvalidationBus(redisHelper, 60_000, 2);
+        for (int i = 0; i < 5; i++) {
+            bus.evict("users", "u" + i);
+        }
+        bus.flush();
+
+        // 达到batchSize时后台可能已经发送了一部分
+        ArgumentCaptor<CacheInvalidation> captor = ArgumentCaptor.forClass(CacheInvalidation.class);
+        Set<String> keys = new HashSet<>();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (keys.size() < 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            keys.clear();
+            verify(redisHelper, atLeastOnce()).sendChannel(eq(CacheInvalidationBus.CHANNEL), captor.capture());
+            for (CacheInvalidation invalidation : captor.getAllValues()) {
+                List<String> users = invalidation.getKeys().get("users");
+                assertTrue(users.size() <= 2);
+                keys.addAll(users);
+            }
+        }
+        assertEquals(5, keys.size());
+        bus.destroy();
+    }
+
+    @Test
+    void receive() {
+        CacheInvalidationBus bus = new CacheInvalidationBus(redisHelper(), 60_000, 500);
+        Cache users = manager(bus).getCache("users");
+        users.put("u1", "v1");
+        users.put("u2", "v2");
+
+        // 自己发出的消息忽略
+        bus.onMessage(message(new CacheInvalidation(bus.getNodeId(), Map.of("users", List.of("u1")), List.of())), null);
+        assertNotNull(users.get("u1"));
+
+        bus.onMessage(message(new CacheInvalidation("other", Map.of("users", List.of("u1")), List.of())), null);
+        assertNull(users.get("u1"));
+        assertNotNull(users.get("u2"));
+
+        bus.onMessage(message(new CacheInvalidation("other", Map.of(), List.of("users"))), null);
+        assertNull(users.get("u2"));
+        bus.destroy();
+    }
+
+    private DefaultMessage message(CacheInvalidation invalidation) {
+        return new DefaultMessage(CacheInvalidationBus.CHANNEL.getBytes(), serializer.serialize(invalidation));
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.helper.redis.cache;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.annotation.AnnotationCacheOperationSource;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.interceptor.CacheInterceptor;
+import org.springframework.cache.support.NullValue;
+import org.springframework.cache.support.SimpleCacheManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * get(key, loader)单飞加载、缓存null值、后台刷新（经过内层切面）、L2回填L1与失效的竞争
+ *
+ * @author shanhuiming
+ */
+public class RedisCaffeineCacheTest {
+
+    private RedisCaffeineCache newCache() {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setL1Enable(true);
+        return new RedisCaffeineCache("test", cacheProperties, CaffeineCache.of(cacheProperties.getL1()), null);
+    }
+
+    @Test
+    void singleFlight() throws Exception {
+        RedisCaffeineCache cache = newCache();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return cache.get("k", () -> {
+                        loads.incrementAndGet();
+                        Thread.sleep(100);
+                        return "v";
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<String> future : futures) {
+                assertEquals("v", future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+        assertEquals(0, cache.flightCount());
+    }
+
+    @Test
+    void failureAndReentrant() {
+        RedisCaffeineCache cache = newCache();
+        assertThrows(Cache.ValueRetrievalException.class, () -> cache.get("k", () -> {
+            throw new IllegalStateException("db down");
+        }));
+        assertEquals(0, cache.flightCount());
+
+        // 加载过程中读取同一个key不会死锁
+        String value = cache.get("k", () -> cache.get("k", () -> "inner") + "-outer");
+        assertEquals("inner-outer", value);
+        assertEquals(0, cache.flightCount());
+    }
+
+    @Test
+    void refreshAhead() throws Exception {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setL1Enable(true);
+        cacheProperties.getL1().setRefreshAfterWrite(1);
+        CacheRefresher refresher = new CacheRefresher(1, 10);
+        RedisCaffeineCache cache = new RedisCaffeineCache("test", cacheProperties,
+                CaffeineCache.of(cacheProperties.getL1()), null, null, refresher);
+        AtomicInteger loads = new AtomicInteger();
+        Callable<String> loader = () -> "v" + loads.incrementAndGet();
+        try {
+            assertEquals("v1", cache.get("k", loader));
+            assertEquals("v1", cache.get("k", loader));
+            Thread.sleep(1100);
+
+            // 超过刷新时间返回旧值，后台重新加载
+            assertEquals("v1", cache.get("k", loader));
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((refresher.stats("test").count() < 1 || cache.flightCount() > 0)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("v2", cache.get("k").get());
+            assertEquals(2, loads.get());
+            assertEquals(1, refresher.stats("test").count());
+            assertEquals(0, refresher.stats("test").failures());
+            assertEquals(0, cache.flightCount());
+        } finally {
+            refresher.shutdown();
+        }
+    }
+
+    public interface Loader {
+
+        String load(String key);
+    }
+
+    public static class CountingLoader implements Loader {
+
+        private final AtomicInteger loads = new AtomicInteger();
+
+        @Cacheable(cacheNames = "test", sync = true)
+        @Override
+        public String load(String key) {
+            return "v" + loads.incrementAndGet();
+        }
+    }
+
+    @Test
+    void refreshThroughInnerInterceptor() throws Exception {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setL1Enable(true);
+        cacheProperties.getL1().setRefreshAfterWrite(1);
+        CacheRefresher refresher = new CacheRefresher(1, 10);
+        RedisCaffeineCache cache = new RedisCaffeineCache("test", cacheProperties,
+                CaffeineCache.of(cacheProperties.getL1()), null, null, refresher);
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(List.of(cache));
+        cacheManager.afterPropertiesSet();
+        CacheInterceptor cacheInterceptor = new CacheInterceptor();
+        cacheInterceptor.setCacheOperationSource(new AnnotationCacheOperationSource());
+        cacheInterceptor.setCacheManager(cacheManager);
+        cacheInterceptor.afterPropertiesSet();
+        cacheInterceptor.afterSingletonsInstantiated();
+
+        // 排在缓存拦截器之内的切面，比如@Transactional
+        AtomicInteger innerCalls = new AtomicInteger();
+        ProxyFactory proxyFactory = new ProxyFactory(new CountingLoader());
+        proxyFactory.addInterface(Loader.class);
+        proxyFactory.addAdvice(new CacheRefreshInterceptor());
+        proxyFactory.addAdvice(cacheInterceptor);
+        proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+            innerCalls.incrementAndGet();
+            return invocation.proceed();
+        });
+        Loader loader = (Loader) proxyFactory.getProxy();
+        try {
+            assertEquals("v1", loader.load("k"));
+            assertEquals("v1", loader.load("k"));
+            Thread.sleep(1100);
+
+            assertEquals("v1", loader.load("k"));
+            long deadline = System.currentTimeMillis() + 5000;
+            while ((refresher.stats("test").count() < 1 || cache.flightCount() > 0)
+                    && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals("v2", cache.get("k").get());
+            // 后台刷新也经过了内层切面
+            assertEquals(2, innerCalls.get());
+        } finally {
+            refresher.shutdown();
+        }
+    }
+
+    @Test
+    void staleFillSkipped() {
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setL1Enable(true);
+        cacheProperties.setL2Enable(true);
+        RedisCache redisCache = mock(RedisCache.class);
+        RedisCaffeineCache cache = new RedisCaffeineCache("test", cacheProperties,
+                CaffeineCache.of(cacheProperties.getL1()), redisCache);
+
+        // 读取L2期间收到其它节点的失效通知，读到的旧值不写入L1
+        when(redisCache.get("test", "k")).thenAnswer(invocation -> {
+            cache.localEvict(List.of("k"));
+            return "old";
+        });
+        assertEquals("old", cache.get("k").get());
+        assertNull(cache.getCaffeineCache().get("k"));
+
+        when(redisCache.get("test", "k")).thenReturn("new");
+        assertEquals("new", cache.get("k").get());
+        assertEquals("new", cache.getCaffeineCache().get("k"));
+    }
+
+    @Test
+    void cachedNull() {
+        RedisCaffeineCache cache = newCache();
+        AtomicInteger loads = new AtomicInteger();
+        Callable<String> loader = () -> {
+            loads.incrementAndGet();
+            return null;
+        };
+        assertNull(cache.get("n", loader));
+        assertNull(cache.get("n", loader));
+        assertEquals(1, loads.get());
+
+        // 其它节点持有租约并写入了null值，轮询L2时命中
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setL2Enable(true);
+        cacheProperties.setL2LoadLease(1000);
+        RedisCache redisCache = mock(RedisCache.class);
+        when(redisCache.tryLease(eq("test"), eq("n"), anyString(), eq(1000L))).thenReturn(false);
+        when(redisCache.get("test", "n")).thenReturn(null, null, NullValue.INSTANCE);
+        RedisCaffeineCache leased = new RedisCaffeineCache("test", cacheProperties, null, redisCache);
+        assertNull(leased.get("n", loader));
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.helper.redis.dict;
+
+import com.cowave.zoo.http.client.asserts.HttpHintException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 值转换器缓存与批量转换
+ *
+ * @author shanhuiming
+ */
+public class CustomValueParsersTest {
+
+    static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    public static class UpperParser implements CustomValueParser<String> {
+
+        public UpperParser() {
+            INSTANCES.incrementAndGet();
+        }
+
+        @Override
+        public String parse(Object value) {
+            return String.valueOf(value).toUpperCase();
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    static class TestDict implements Dict {
+        private String groupCode;
+        private String typeCode;
+        private String dictCode;
+        private String dictName;
+        private Object dictValue;
+        private Integer dictOrder;
+        private String valueType;
+        private String valueParser;
+    }
+
+    private TestDict dict(Object value, String valueType, String valueParser) {
+        return new TestDict("g", "t", "c", "n", value, 0, valueType, valueParser);
+    }
+
+    @Test
+    void decode() {
+        String parser = UpperParser.class.getName();
+        List<TestDict> dicts = List.of(
+                dict("12", "int32", null), dict(12, "int64", null), dict("true", "bool", null),
+                dict(1.5, "decimal", null), dict("a", "custom", parser), dict("b", "custom", parser),
+                dict("x", null, null), dict("y", "custom", null));
+        CustomValueParsers parsers = new CustomValueParsers();
+        int before = INSTANCES.get();
+        parsers.decode(dicts);
+        assertEquals(12, dicts.get(0).getDictValue());
+        assertEquals(12L, dicts.get(1).getDictValue());
+        assertEquals(Boolean.TRUE, dicts.get(2).getDictValue());
+        assertEquals(new BigDecimal("1.5"), dicts.get(3).getDictValue());
+        assertEquals("A", dicts.get(4).getDictValue());
+        assertEquals("B", dicts.get(5).getDictValue());
+        assertEquals("x", dicts.get(6).getDictValue());
+        assertNull(dicts.get(7).getDictValue());
+
+        // 转换器只创建一次
+        assertEquals("C", parsers.getValue("c", "custom", parser));
+        assertTrue(INSTANCES.get() - before <= 1);
+    }
+
+    @Test
+    void registered() {
+        CustomValueParsers parsers = new CustomValueParsers();
+        parsers.register("prefixParser", value -> "p-" + value);
+        assertEquals("p-1", parsers.getValue(1, "custom", "prefixParser"));
+        assertThrows(HttpHintException.class, () -> parsers.getValue(1, "custom", "no.such.Parser"));
+        // 注册表之间互不影响
+        assertThrows(HttpHintException.class, () -> new CustomValueParsers().getValue(1, "custom", "prefixParser"));
+    }
+
+    @Test
+    void beanParsers() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        CustomValueParsers parsers = new CustomValueParsers(beanFactory);
+        // 注册表创建之后注册的bean也能在查找时解析
+        CustomValueParser<String> prefixParser = value -> "p-" + value;
+        UpperParser upperParser = new UpperParser();
+        beanFactory.registerSingleton("prefixParser", prefixParser);
+        beanFactory.registerSingleton("upperParser", upperParser);
+
+        assertEquals("p-1", parsers.getValue(1, "custom", "prefixParser"));
+        assertSame(prefixParser, parsers.get("prefixParser"));
+        assertSame(upperParser, parsers.get(UpperParser.class.getName()));
+    }
+}
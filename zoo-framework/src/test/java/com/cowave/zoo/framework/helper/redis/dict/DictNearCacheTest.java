@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0.txt
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.cowave.zoo.framework.helper.redis.dict;
+
+import com.cowave.zoo.framework.helper.redis.RedisHelper;
+import com.cowave.zoo.framework.helper.redis.StringRedisHelper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 字典本地缓存跨节点失效
+ *
+ * @author shanhuiming
+ */
+public class DictNearCacheTest {
+
+    private final StringRedisTemplate stringRedisTemplate = mock(StringRedisTemplate.class);
+
+    private final DictHelper dictHelper;
+
+    DictNearCacheTest() {
+        StringRedisHelper stringRedisHelper = mock(StringRedisHelper.class);
+        when(stringRedisHelper.getRedisTemplate()).thenReturn(stringRedisTemplate);
+        dictHelper = new DictHelper(mock(RedisHelper.class), stringRedisHelper, 1000, new DictNearCache(100, 0));
+    }
+
+    /**
+     * DictHelper实际发出的消息字节（StringRedisTemplate按UTF-8序列化）
+     */
+    private DefaultMessage published() {
+        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+        verify(stringRedisTemplate, atLeastOnce()).convertAndSend(eq(DictNearCache.CHANNEL), captor.capture());
+        byte[] body = RedisSerializer.string().serialize(captor.getValue());
+        return new DefaultMessage(DictNearCache.CHANNEL.getBytes(StandardCharsets.UTF_8), body);
+    }
+
+    @Test
+    void remoteInvalidate() {
+        DictNearCache remote = new DictNearCache(100, 0);
+        remote.get("dict:code:c1", () -> "old");
+        remote.get("dict:group:g", () -> "old");
+        remote.get("dict:code:other", () -> "other");
+
+        dictHelper.put(new CustomValueParsersTest.TestDict("g", "t", "c1", "n", "v", 0, null, null));
+        remote.onMessage(published(), null);
+        assertEquals("new", remote.get("dict:code:c1", () -> "new"));
+        assertEquals("new", remote.get("dict:group:g", () -> "new"));
+        assertEquals("other", remote.get("dict:code:other", () -> "new"));
+    }
+
+    @Test
+    void remoteInvalidateAll() {
+        DictNearCache remote = new DictNearCache(100, 0);
+        remote.get("dict:code:c1", () -> "old");
+
+        dictHelper.clear();
+        remote.onMessage(published(), null);
+        assertEquals(0, remote.size());
+        assertEquals("new", remote.get("dict:code:c1", () -> "new"));
+    }
+}